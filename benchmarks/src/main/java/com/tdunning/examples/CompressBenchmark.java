@@ -0,0 +1,55 @@
+package com.tdunning.examples;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times {@link CooData#compress} on matrices with power-law distributed indexes. The largest size
+ * needs a big heap, which is why the forked JVM is given one.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+@State(Scope.Benchmark)
+public class CompressBenchmark {
+    @Param({"1000000", "10000000", "100000000"})
+    int entries;
+
+    private int[] rows;
+    private int[] cols;
+    private double[] values;
+    private CooData m;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        int n = 1000000;
+        Random rand = new Random(1);
+        rows = new int[entries];
+        cols = new int[entries];
+        values = new double[entries];
+        for (int k = 0; k < entries; k++) {
+            rows[k] = Math.min(n - 1, (int) (-n / 10 * Math.log(rand.nextDouble())));
+            cols[k] = Math.min(n - 1, (int) (-n / 10 * Math.log(rand.nextDouble())));
+            values[k] = 1;
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        m = new CooData(1000000, 1000000);
+        m.rows = rows.clone();
+        m.cols = cols.clone();
+        m.values = values.clone();
+        m.entries = entries;
+    }
+
+    @Benchmark
+    public int compressByColumn() {
+        m.compress(CooData.ElementOrdering.BY_COL, true);
+        return m.entries;
+    }
+}
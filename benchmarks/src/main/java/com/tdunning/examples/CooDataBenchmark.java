@@ -0,0 +1,45 @@
+package com.tdunning.examples;
+
+import org.openjdk.jmh.annotations.*;
+import smile.math.matrix.SparseMatrix;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times building a {@link CooData} from power-law distributed triples, including the compressions
+ * that happen along the way, and converting the result to a {@link SparseMatrix}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class CooDataBenchmark {
+    private static final int N = 1000000;
+
+    @Param({"1000000", "10000000"})
+    int entries;
+
+    private Generators.Triples triples;
+    private CooData compressed;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        triples = new Generators.Triples(N, entries, 1);
+        compressed = triples.asCooData(N);
+        compressed.compress(CooData.ElementOrdering.BY_COL, false);
+    }
+
+    @Benchmark
+    public int addAndCompress() {
+        CooData m = triples.asCooData(N);
+        m.compress(CooData.ElementOrdering.BY_COL, false);
+        return m.entries;
+    }
+
+    @Benchmark
+    public SparseMatrix asSparseMatrix() {
+        return compressed.asSparseMatrix();
+    }
+}
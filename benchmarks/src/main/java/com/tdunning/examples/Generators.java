@@ -0,0 +1,137 @@
+package com.tdunning.examples;
+
+import java.util.Random;
+
+/**
+ * Seeded synthetic data for the benchmarks. Nothing here reads local files, so results are
+ * comparable from one machine or one commit to the next.
+ */
+final class Generators {
+    private Generators() {
+    }
+
+    /**
+     * @return n distinct lower case pseudo-words that the tokenizer treats as single tokens
+     */
+    static String[] vocabulary(int n) {
+        String[] words = new String[n];
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            s.setLength(0);
+            int k = i;
+            do {
+                s.append((char) ('a' + k % 26));
+                k /= 26;
+            } while (k > 0);
+            // a fixed suffix keeps words from being too short to be realistic
+            words[i] = s.append("ly").toString();
+        }
+        return words;
+    }
+
+    /**
+     * A document of Zipf distributed words with a sentence break about every ten words.
+     */
+    static String document(Zipf zipf, String[] words, int length) {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            s.append(words[zipf.next()]).append(i % 10 == 9 ? ". " : " ");
+        }
+        return s.toString();
+    }
+
+    /**
+     * Samples ranks from 0 to n-1 with probability proportional to 1 / (rank + 1)^exponent.
+     */
+    static final class Zipf {
+        private final double[] cdf;
+        private final Random rand;
+
+        Zipf(int n, double exponent, Random rand) {
+            this.rand = rand;
+            cdf = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += Math.pow(i + 1, -exponent);
+                cdf[i] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cdf[i] /= sum;
+            }
+        }
+
+        int next() {
+            double u = rand.nextDouble();
+            int low = 0;
+            int high = cdf.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cdf[mid] < u) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * COO triples with power-law distributed row and column indexes. A few indexes get a large share
+     * of the entries, the way popular terms do in a co-occurrence matrix.
+     */
+    static final class Triples {
+        final int[] rows;
+        final int[] cols;
+        final double[] values;
+
+        Triples(int n, int entries, long seed) {
+            Random rand = new Random(seed);
+            rows = new int[entries];
+            cols = new int[entries];
+            values = new double[entries];
+            for (int k = 0; k < entries; k++) {
+                rows[k] = powerLaw(rand, n);
+                cols[k] = powerLaw(rand, n);
+                values[k] = rand.nextGaussian();
+            }
+        }
+
+        CooData asCooData(int n) {
+            CooData m = new CooData(n, n);
+            for (int k = 0; k < rows.length; k++) {
+                m.add(rows[k], cols[k], values[k]);
+            }
+            return m;
+        }
+    }
+
+    private static int powerLaw(Random rand, int n) {
+        // Pareto with exponent 1, so index i has probability roughly proportional to 1 / (i + 1)^2
+        return (int) Math.min(n - 1, 1 / (1 - rand.nextDouble()) - 1);
+    }
+
+    /**
+     * The diffusion matrix for a side x side mesh where each node connects to its eight neighbors,
+     * the same problem that JacobiTest solves.
+     */
+    static CooData mesh(int side) {
+        CooData data = new CooData(side * side, side * side);
+        for (int i = 0; i < side; i++) {
+            for (int j = 0; j < side; j++) {
+                int k0 = i * side + j;
+                double sum = 0;
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dy = -1; dy <= 1; dy++) {
+                        if ((dx != 0 || dy != 0) && i + dx >= 0 && i + dx < side && j + dy >= 0 && j + dy < side) {
+                            sum += 0.125;
+                            data.add(k0, (i + dx) * side + j + dy, 0.125);
+                        }
+                    }
+                }
+                data.add(k0, k0, -sum);
+            }
+        }
+        return data;
+    }
+}
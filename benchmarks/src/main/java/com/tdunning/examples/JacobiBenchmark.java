@@ -0,0 +1,51 @@
+package com.tdunning.examples;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times a fixed number of {@link Jacobi} sweeps over a mesh diffusion problem, for one right hand side
+ * and for a batch of eight. Convergence takes thousands of sweeps on these problems, so the tolerance
+ * is zero and only the time per sweep is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class JacobiBenchmark {
+    private static final int SWEEPS = 20;
+
+    @Param({"100", "1000"})
+    int side;
+
+    private Jacobi solver;
+    private double[] b;
+    private double[][] batch;
+
+    @Setup
+    public void setup() {
+        solver = new Jacobi(Generators.mesh(side).asCsrMatrix());
+        int n = side * side;
+        batch = new double[8][n];
+        for (int r = 0; r < 8; r++) {
+            for (int i = 0; i < side; i++) {
+                batch[r][i * side] = 1;
+                batch[r][i * side + side - 1] = -1 - r;
+            }
+        }
+        b = batch[0];
+    }
+
+    @Benchmark
+    public double[] solve() {
+        return solver.solve(b, 0, SWEEPS);
+    }
+
+    @Benchmark
+    public double[][] solveBatch() {
+        return solver.solve(batch, 0, SWEEPS, null);
+    }
+}
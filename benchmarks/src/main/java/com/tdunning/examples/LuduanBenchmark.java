@@ -0,0 +1,47 @@
+package com.tdunning.examples;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times extracting {@link Luduan} features from one document, which is the per-request cost when
+ * serving. Training uses Zipf distributed documents with a low score threshold so that every term
+ * has plenty of indicators.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LuduanBenchmark {
+    @Param({"100", "1000"})
+    int documentLength;
+
+    private Luduan luduan;
+    private String doc;
+    private SparseVector result;
+
+    @Setup
+    public void setup() {
+        int vocabularySize = 10000;
+        String[] words = Generators.vocabulary(vocabularySize);
+        Generators.Zipf zipf = new Generators.Zipf(vocabularySize, 1.0, new Random(1));
+        List<String> corpus = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            corpus.add(Generators.document(zipf, words, 100));
+        }
+        luduan = new LuduanTrainer(3, 1000, 0, 50).train(corpus::stream);
+        doc = Generators.document(zipf, words, documentLength);
+        result = new SparseVector();
+    }
+
+    @Benchmark
+    public SparseVector features() {
+        return luduan.features(doc, result);
+    }
+}
@@ -0,0 +1,69 @@
+package com.tdunning.examples;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times finding the 50 nearest rows of a GloVe sized table of unit vectors, by brute force for one
+ * query and for a batch of 64, and with an {@link LshIndex}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class NearestNeighborsBenchmark {
+    @Param({"400000"})
+    int rows;
+
+    @Param({"100"})
+    int dimension;
+
+    private NearestNeighbors nn;
+    private LshIndex lsh;
+    private float[] query;
+    private float[][] batch;
+
+    @Setup
+    public void setup() {
+        Random rand = new Random(1);
+        float[] vectors = new float[rows * dimension];
+        for (int offset = 0; offset < vectors.length; offset += dimension) {
+            double sum = 0;
+            for (int i = 0; i < dimension; i++) {
+                vectors[offset + i] = (float) rand.nextGaussian();
+                sum += vectors[offset + i] * vectors[offset + i];
+            }
+            for (int i = 0; i < dimension; i++) {
+                vectors[offset + i] /= Math.sqrt(sum);
+            }
+        }
+        nn = new NearestNeighbors(vectors, rows, dimension);
+        lsh = new LshIndex(nn, 8, 14, 1);
+        batch = new float[64][dimension];
+        for (float[] q : batch) {
+            for (int i = 0; i < dimension; i++) {
+                q[i] = (float) rand.nextGaussian();
+            }
+        }
+        query = batch[0];
+    }
+
+    @Benchmark
+    public TopK search() {
+        return nn.search(query, 50);
+    }
+
+    @Benchmark
+    public TopK[] searchBatch() {
+        return nn.search(batch, 50);
+    }
+
+    @Benchmark
+    public TopK searchLsh() {
+        return lsh.search(query, 50);
+    }
+}
@@ -0,0 +1,87 @@
+package com.tdunning.examples;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times both families of {@link Sort} methods, the int key sort with paired arrays and the parallel
+ * versions of each. Keys are drawn from a small range so there are many duplicates, the way there are
+ * when sorting matrix indexes.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SortBenchmark {
+    @Param({"100000", "10000000"})
+    int n;
+
+    private int[] intKeys;
+    private double[] doubleKeys;
+
+    private int[] order;
+    private int[] ints;
+    private int[] other;
+    private double[] doubles;
+    private double[] values;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        Random rand = new Random(1);
+        intKeys = new int[n];
+        doubleKeys = new double[n];
+        for (int i = 0; i < n; i++) {
+            intKeys[i] = rand.nextInt(n / 10);
+            doubleKeys[i] = intKeys[i];
+        }
+        order = new int[n];
+        other = new int[n];
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        ints = intKeys.clone();
+        doubles = doubleKeys.clone();
+        values = doubleKeys.clone();
+    }
+
+    @Benchmark
+    public int[] indexSort() {
+        Sort.sort(order, ints);
+        return order;
+    }
+
+    @Benchmark
+    public int[] parallelIndexSort() {
+        Sort.parallelSort(order, ints);
+        return order;
+    }
+
+    @Benchmark
+    public double[] pairedSort() {
+        Sort.sort(doubles, values);
+        return doubles;
+    }
+
+    @Benchmark
+    public double[] parallelPairedSort() {
+        Sort.parallelSort(doubles, values);
+        return doubles;
+    }
+
+    @Benchmark
+    public int[] intKeySort() {
+        Sort.sort(ints, 0, n, other, values);
+        return ints;
+    }
+
+    @Benchmark
+    public int[] parallelIntKeySort() {
+        Sort.parallelSort(ints, 0, n, other, values);
+        return ints;
+    }
+}
@@ -0,0 +1,55 @@
+package com.tdunning.examples;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the regex tokenizer with the hand-written {@link Tokenizer} on review-like text.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TokenizerBenchmark {
+    private static final String[] WORDS = {
+            "the", "hotel", "was", "great", "and", "Room", "clean", "staff", "didn't", "breakfast",
+            "$10.50", "@front-desk", "#travel", "12:.5", "location", "http://www.example.com/x"
+    };
+
+    @Param({"100", "1000"})
+    int documentLength;
+
+    private String doc;
+    private Tokenizer tokenizer;
+
+    @Setup
+    public void setup() {
+        Random rand = new Random(1);
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < documentLength; i++) {
+            s.append(WORDS[rand.nextInt(WORDS.length)]).append(rand.nextDouble() < 0.1 ? ". " : " ");
+        }
+        doc = s.toString();
+        tokenizer = new Tokenizer();
+    }
+
+    @Benchmark
+    public void regex(Blackhole bh) {
+        VectorText.regexTokenize(doc).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public void stream(Blackhole bh) {
+        VectorText.tokenize(doc).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public int offsets() {
+        return tokenizer.tokenize(doc);
+    }
+}
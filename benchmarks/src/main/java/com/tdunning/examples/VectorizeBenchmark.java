@@ -0,0 +1,82 @@
+package com.tdunning.examples;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times tokenizing and converting documents of Zipf distributed words to vectors with a HashMap
+ * dictionary, with {@link TermDictionary} and with {@link HashingVectorizer}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class VectorizeBenchmark {
+    @Param({"10000", "100000"})
+    int vocabularySize;
+
+    @Param({"1000"})
+    int documentLength;
+
+    private String doc;
+    private Map<String, Integer> map;
+    private TermDictionary dictionary;
+    private SparseVector result;
+    private HashingVectorizer hashing;
+
+    @Setup
+    public void setup() {
+        String[] words = Generators.vocabulary(vocabularySize);
+        doc = Generators.document(new Generators.Zipf(vocabularySize, 1.0, new Random(1)), words, documentLength);
+        map = new HashMap<>();
+        // leave out the most common tenth of the words the way a dictionary would leave out stop words
+        for (int i = vocabularySize / 10; i < vocabularySize; i++) {
+            map.put(words[i], map.size());
+        }
+        dictionary = TermDictionary.from(map).freeze();
+        result = new SparseVector();
+        hashing = new HashingVectorizer(1 << 18, 1, true, 0);
+    }
+
+    @Benchmark
+    public void tokenize(Blackhole bh) {
+        VectorText.tokenize(doc).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public int[] vectorizeMap() {
+        return VectorText.vectorize(map, doc);
+    }
+
+    @Benchmark
+    public int[] countMap() {
+        return VectorText.count(map, doc);
+    }
+
+    @Benchmark
+    public int[] vectorize() {
+        return VectorText.vectorize(dictionary, doc);
+    }
+
+    @Benchmark
+    public int[] count() {
+        return VectorText.count(dictionary, doc);
+    }
+
+    @Benchmark
+    public SparseVector countSparse() {
+        return VectorText.count(dictionary, doc, result);
+    }
+
+    @Benchmark
+    public SparseVector countHashed() {
+        return hashing.count(doc, result);
+    }
+}
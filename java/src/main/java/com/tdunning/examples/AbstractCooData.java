@@ -0,0 +1,507 @@
+package com.tdunning.examples;
+
+import smile.math.matrix.SparseMatrix;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The index handling shared by all of the coordinate format accumulators. This keeps the row and
+ * column of each entry and knows how to sort, collapse, merge and convert them. The values live
+ * in the subclasses so that each can store them in the narrowest primitive array that works:
+ * {@link CooData} uses doubles, {@link FloatCooData} floats, {@link IntCooData} ints and
+ * {@link PatternCooData} doesn't store values at all.
+ * <p>
+ * Subclasses move values in bulk through a handful of hooks that each cover a whole sorting pass
+ * or range, so the index machinery never needs to know the value type and the inner loops stay
+ * monomorphic.
+ *
+ * @param <T> The concrete type so that merging and appending stay within one value type
+ */
+public abstract class AbstractCooData<T extends AbstractCooData<T>> {
+    private int entriesAddedSinceCompression = 0;
+    private ElementOrdering lastOrdering = ElementOrdering.NONE;
+
+    int entries;
+    private int nrows;
+    private int ncols;
+    int[] rows;
+    int[] cols;
+
+    AbstractCooData(int rows, int cols, int capacity) {
+        this.nrows = rows;
+        this.ncols = cols;
+        capacity = Math.max(capacity, 1);
+        this.rows = new int[capacity];
+        this.cols = new int[capacity];
+    }
+
+    /**
+     * Grows the value storage to n elements, keeping existing values.
+     */
+    abstract void resizeValues(int n);
+
+    /**
+     * @return A scratch array of the same type as the values with room for n of them, or null if there
+     * are no values
+     */
+    abstract Object newValueScratch(int n);
+
+    /**
+     * One pass of a counting sort on the values. For each entry k in order, the value at from[k] moves
+     * to to[offsets[keys[k]]], and that offset is then incremented.
+     */
+    abstract void scatterValues(int[] keys, int[] offsets, Object from, Object to);
+
+    /**
+     * @return The array holding the values so that sorting can move them along with the indexes, or
+     * null if there are no values
+     */
+    abstract Object valueArray();
+
+    /**
+     * Sums runs of values. Run f covers positions starts[f] (inclusive) to starts[f+1] (exclusive) and its
+     * sum is stored at position f.
+     */
+    abstract void collapseValues(int[] starts, int n);
+
+    /**
+     * Adds the values of all of the parts to the values in this. Value k of part p goes to position
+     * destinations[p][k].
+     */
+    abstract void addValues(List<T> parts, int[][] destinations);
+
+    /**
+     * Copies all of the values of other into this starting at position to.
+     */
+    abstract void copyValues(T other, int to);
+
+    /**
+     * Replaces the value storage with the storage of other.
+     */
+    abstract void takeValues(T other);
+
+    /**
+     * @return An empty accumulator of the same type with zero values
+     */
+    abstract T create(int rows, int cols, int capacity);
+
+    /**
+     * @param copy If false, the result may share storage with this object
+     * @return The values widened to double. There are at least as many as the number of entries.
+     */
+    abstract double[] doubleValues(boolean copy);
+
+    /**
+     * Checks the indexes of a new entry and finds room for it.
+     *
+     * @return Where the value of the new entry should go
+     */
+    int nextEntry(int i, int j) {
+        if (i < 0 || (nrows != -1 && i >= nrows)) {
+            throw new IllegalArgumentException(String.format("Invalid row %d (should be in [0,%d)", i, nrows));
+        }
+        if (j < 0 || (ncols != -1 && j >= ncols)) {
+            throw new IllegalArgumentException(String.format("Invalid column %d (should be in [0,%d)", j, ncols));
+        }
+
+        if (entries >= rows.length) {
+            if (entriesAddedSinceCompression > entries / 4.0) {
+                compress(ElementOrdering.BY_COL, false);
+            }
+            int n = 2 * entries;
+            if (n > rows.length) {
+                grow(n);
+            }
+        }
+        rows[entries] = i;
+        cols[entries] = j;
+        lastOrdering = ElementOrdering.NONE;
+        entriesAddedSinceCompression++;
+        return entries++;
+    }
+
+    private void grow(int n) {
+        rows = Arrays.copyOf(rows, n);
+        cols = Arrays.copyOf(cols, n);
+        resizeValues(n);
+    }
+
+    /**
+     * Reorder and aggregate data and indexes to be a proper sparse matrix.
+     *
+     * @return The resulting matrix
+     */
+    public SparseMatrix asSparseMatrix() {
+        compress(ElementOrdering.BY_COL, false);
+        resolveSizing();
+
+        // data is now sorted by col, then row
+        // we just need to make a short column index
+        // note that we create one last element to point to the end of all data
+        int[] colIndex = new int[ncols + 1];
+        int last = -1;
+        int j = 0;
+        for (int k = 0; k < entries; ) {
+            assert rows[k] >= 0 && rows[k] < nrows;
+            assert cols[k] >= 0 && cols[k] < ncols;
+
+            while (j <= cols[k]) {
+                colIndex[j++] = k;
+            }
+            last = cols[k];
+            while (k < entries && cols[k] == last) {
+                k++;
+            }
+        }
+        // trailing empty columns all point to the end of the data
+        while (j <= ncols) {
+            colIndex[j++] = entries;
+        }
+        return new SparseMatrix(nrows, ncols, doubleValues(false), rows, colIndex);
+    }
+
+    /**
+     * Reorder and aggregate data to be a row compressed matrix. The result has its own copy of
+     * the data so it stays valid even if this object is later compressed by column.
+     *
+     * @return The resulting matrix
+     */
+    public CsrMatrix asCsrMatrix() {
+        compress(ElementOrdering.BY_ROW, false);
+        resolveSizing();
+
+        // data is now sorted by row, then column so we only need the start of each row
+        int[] rowPointers = new int[nrows + 1];
+        for (int k = 0; k < entries; k++) {
+            assert rows[k] >= 0 && rows[k] < nrows;
+            assert cols[k] >= 0 && cols[k] < ncols;
+            rowPointers[rows[k] + 1]++;
+        }
+        for (int i = 0; i < nrows; i++) {
+            rowPointers[i + 1] += rowPointers[i];
+        }
+        return new CsrMatrix(nrows, ncols, rowPointers, Arrays.copyOf(cols, entries), doubleValues(true));
+    }
+
+    /**
+     * Discards all entries but keeps the allocated space.
+     */
+    void clear() {
+        entries = 0;
+        entriesAddedSinceCompression = 0;
+        lastOrdering = ElementOrdering.NONE;
+    }
+
+    private void resolveSizing() {
+        if (ncols == -1 || nrows == -1) {
+            for (int k = 0; k < entries; k++) {
+                ncols = Math.max(ncols, cols[k] + 1);
+                nrows = Math.max(nrows, rows[k] + 1);
+            }
+        }
+    }
+
+    enum ElementOrdering {
+        NONE, BY_ROW, BY_COL
+    }
+
+    /**
+     * Sorts the data into the requested order and sums any entries that have the same row and column.
+     * <p>
+     * Row and column indexes are bounded, so the usual way to do this is a two-pass LSD counting sort,
+     * first on the minor index and then on the major index. Both passes are stable, so entries at the
+     * same location are summed in the order they were added. If the indexes span a range that is much
+     * larger than the number of entries, the count arrays would cost more than they save, so we fall
+     * back to a comparison sort.
+     *
+     * @param elementOrdering Whether to sort by row or by column
+     * @param force           If false, nothing is done if the data is already in the requested order
+     */
+    @SuppressWarnings("WeakerAccess")
+    public void compress(ElementOrdering elementOrdering, boolean force) {
+        if (!force && lastOrdering == elementOrdering) {
+            return;
+        }
+        entriesAddedSinceCompression = 0;
+        lastOrdering = elementOrdering;
+
+        int[] major;
+        int[] minor;
+        switch (elementOrdering) {
+            case BY_ROW:
+                major = this.rows;
+                minor = this.cols;
+                break;
+            case BY_COL:
+            default:
+                major = this.cols;
+                minor = this.rows;
+        }
+
+        int majorLimit = limit(major);
+        int minorLimit = limit(minor);
+        long countingLimit = 4L * entries + (1 << 16);
+        int[] starts;
+        if (majorLimit <= countingLimit && minorLimit <= countingLimit) {
+            // the scratch space for the sort is reused to mark where each run to collapse starts
+            starts = countingSort(major, minor, majorLimit, minorLimit);
+        } else {
+            comparisonSort(major, minor);
+            starts = new int[entries + 1];
+        }
+
+        // now collapse ranges of constant row and column
+        int fill = 0;
+        for (int k = 0; k < entries; ) {
+            int r = major[k];
+            int c = minor[k];
+            starts[fill] = k;
+            while (k < entries && major[k] == r && minor[k] == c) {
+                k++;
+            }
+            major[fill] = r;
+            minor[fill] = c;
+            fill++;
+        }
+        starts[fill] = entries;
+        collapseValues(starts, fill);
+        entries = fill;
+    }
+
+    /**
+     * @return One more than the largest index in the live entries
+     */
+    private int limit(int[] index) {
+        int max = -1;
+        for (int k = 0; k < entries; k++) {
+            max = Math.max(max, index[k]);
+        }
+        return max + 1;
+    }
+
+    /**
+     * Stable sort on minor and then on major. The first pass scatters into scratch arrays and the
+     * second pass scatters back so that the sorted data ends up where it started. The values are
+     * scattered first in each pass, which leaves each offset at the end of its bucket, and the
+     * indexes are then scattered backwards from those ends so that one set of offsets does for both.
+     *
+     * @return A scratch array with room for entries + 1 ints that is no longer needed
+     */
+    private int[] countingSort(int[] major, int[] minor, int majorLimit, int minorLimit) {
+        int[] tmpMajor = new int[entries + 1];
+        int[] tmpMinor = new int[entries];
+        Object values = valueArray();
+        Object tmpValues = newValueScratch(entries);
+
+        int[] offsets = startOffsets(minor, minorLimit);
+        scatterValues(minor, offsets, values, tmpValues, minorLimit);
+        for (int k = entries - 1; k >= 0; k--) {
+            int to = --offsets[minor[k]];
+            tmpMajor[to] = major[k];
+            tmpMinor[to] = minor[k];
+        }
+
+        offsets = startOffsets(tmpMajor, majorLimit);
+        scatterValues(tmpMajor, offsets, tmpValues, values, majorLimit);
+        for (int k = entries - 1; k >= 0; k--) {
+            int to = --offsets[tmpMajor[k]];
+            major[to] = tmpMajor[k];
+            minor[to] = tmpMinor[k];
+        }
+        return tmpMajor;
+    }
+
+    /**
+     * Scatters the values and leaves each offset at the end of its bucket. Without values, shifting
+     * the offsets down by one does the same thing.
+     */
+    private void scatterValues(int[] keys, int[] offsets, Object from, Object to, int limit) {
+        if (to == null) {
+            System.arraycopy(offsets, 1, offsets, 0, limit);
+        } else {
+            scatterValues(keys, offsets, from, to);
+        }
+    }
+
+    /**
+     * Counts how often each index occurs and turns that into the offset where each index starts.
+     */
+    private int[] startOffsets(int[] index, int limit) {
+        int[] offsets = new int[limit + 1];
+        for (int k = 0; k < entries; k++) {
+            offsets[index[k] + 1]++;
+        }
+        for (int i = 0; i < limit; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        return offsets;
+    }
+
+    /**
+     * Sort by major index and then by minor index within each run of constant major index using
+     * a quick sort that moves the other index and the values along with the key. This is only used
+     * when the indexes are too sparse for counting.
+     */
+    private void comparisonSort(int[] major, int[] minor) {
+        Object values = valueArray();
+        if (values == null) {
+            Sort.parallelSort(major, 0, entries, minor);
+        } else {
+            Sort.parallelSort(major, 0, entries, minor, values);
+        }
+
+        for (int i = 0; i < entries; ) {
+            // for each range of constant row number, sort by column
+            int j = i + 1;
+            while (j < entries && major[j] == major[i]) {
+                j++;
+            }
+            if (j > i + 1) {
+                if (values == null) {
+                    Sort.sort(minor, i, j - i);
+                } else {
+                    Sort.sort(minor, i, j - i, values);
+                }
+            }
+            i = j;
+        }
+    }
+
+    /**
+     * Merges several sets of data into one. Each part is compressed into the requested
+     * order first (in place) and then all parts are combined with a k-way merge so that
+     * the result is already compressed without any further sorting. Values at the same
+     * location in different parts are summed.
+     *
+     * @param ordering The ordering for the parts and the result
+     * @param parts    The data to merge. These are left compressed but are otherwise unchanged.
+     * @return A new object with all the entries from all the parts
+     */
+    static <T extends AbstractCooData<T>> T merge(ElementOrdering ordering, List<T> parts) {
+        if (ordering == ElementOrdering.NONE) {
+            throw new IllegalArgumentException("Merging requires a real ordering");
+        }
+        if (parts.isEmpty()) {
+            throw new IllegalArgumentException("Need at least one part to merge");
+        }
+        int total = 0;
+        int nrows = 0;
+        int ncols = 0;
+        for (AbstractCooData<T> part : parts) {
+            part.compress(ordering, false);
+            total += part.entries;
+            nrows = (nrows == -1 || part.nrows == -1) ? -1 : Math.max(nrows, part.nrows);
+            ncols = (ncols == -1 || part.ncols == -1) ? -1 : Math.max(ncols, part.ncols);
+        }
+
+        T r = parts.get(0).create(nrows, ncols, total);
+
+        // a heap of the parts that still have data ordered by the key of their next element
+        int[] heap = new int[parts.size()];
+        long[] keys = new long[parts.size()];
+        int[] position = new int[parts.size()];
+        // where each entry of each part lands in the result
+        int[][] destinations = new int[parts.size()][];
+        int n = 0;
+        for (int p = 0; p < parts.size(); p++) {
+            destinations[p] = new int[parts.get(p).entries];
+            if (parts.get(p).entries > 0) {
+                keys[p] = parts.get(p).key(ordering, 0);
+                heap[n++] = p;
+            }
+        }
+        for (int i = n / 2 - 1; i >= 0; i--) {
+            siftDown(heap, keys, n, i);
+        }
+
+        long lastKey = -1;
+        while (n > 0) {
+            int p = heap[0];
+            AbstractCooData<T> part = parts.get(p);
+            int k = position[p]++;
+            if (keys[p] != lastKey) {
+                r.rows[r.entries] = part.rows[k];
+                r.cols[r.entries] = part.cols[k];
+                r.entries++;
+                lastKey = keys[p];
+            }
+            destinations[p][k] = r.entries - 1;
+            if (position[p] < part.entries) {
+                keys[p] = part.key(ordering, position[p]);
+            } else {
+                heap[0] = heap[--n];
+            }
+            siftDown(heap, keys, n, 0);
+        }
+        r.addValues(parts, destinations);
+        ((AbstractCooData<T>) r).lastOrdering = ordering;
+        return r;
+    }
+
+    /**
+     * Packs the major and minor index of an entry into a single sort key.
+     */
+    long key(ElementOrdering ordering, int k) {
+        if (ordering == ElementOrdering.BY_ROW) {
+            return ((long) rows[k] << 32) | cols[k];
+        } else {
+            return ((long) cols[k] << 32) | rows[k];
+        }
+    }
+
+    private static void siftDown(int[] heap, long[] keys, int n, int i) {
+        int p = heap[i];
+        while (2 * i + 1 < n) {
+            int child = 2 * i + 1;
+            if (child + 1 < n && keys[heap[child + 1]] < keys[heap[child]]) {
+                child++;
+            }
+            if (keys[heap[child]] >= keys[p]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = p;
+    }
+
+    /**
+     * Adds all of the entries from another accumulator to this one. This is suitable as the combiner
+     * when collecting a stream.
+     * <p>
+     * If both sides are already compressed in the same order, they are merged in linear time
+     * and the result stays compressed. Otherwise, the other entries are simply copied onto the end
+     * and will be sorted on the next compression.
+     *
+     * @param other The entries to add. This is not changed except that it may be compressed.
+     */
+    @SuppressWarnings("unchecked")
+    public void append(T other) {
+        AbstractCooData<T> that = other;
+        int mergedRows = (nrows == -1 || that.nrows == -1) ? -1 : Math.max(nrows, that.nrows);
+        int mergedCols = (ncols == -1 || that.ncols == -1) ? -1 : Math.max(ncols, that.ncols);
+
+        if (lastOrdering != ElementOrdering.NONE && lastOrdering == that.lastOrdering) {
+            T merged = merge(lastOrdering, Arrays.asList((T) this, other));
+            rows = merged.rows;
+            cols = merged.cols;
+            takeValues(merged);
+            entries = merged.entries;
+            entriesAddedSinceCompression = 0;
+        } else {
+            int n = entries + other.entries;
+            if (n > rows.length) {
+                grow(Math.max(n, 2 * rows.length));
+            }
+            System.arraycopy(other.rows, 0, rows, entries, other.entries);
+            System.arraycopy(other.cols, 0, cols, entries, other.entries);
+            copyValues(other, entries);
+            entries += other.entries;
+            entriesAddedSinceCompression += other.entries;
+            lastOrdering = ElementOrdering.NONE;
+        }
+        nrows = mergedRows;
+        ncols = mergedCols;
+    }
+}
@@ -0,0 +1,145 @@
+package com.tdunning.examples;
+
+import smile.math.matrix.SparseMatrix;
+
+import java.util.stream.IntStream;
+
+/**
+ * Finds the most interesting associates of each term from a term by term co-occurrence matrix by
+ * scoring each co-occurrence with the log-likelihood ratio (LLR) test and keeping the best few for
+ * each term.
+ * <p>
+ * The LLR score for a pair of terms depends on how often they occur together (k11), how often
+ * each occurs without the other (k12 and k21) and how many documents have neither (k22). Written
+ * in terms of x log x, the score is
+ * <pre>
+ *     2 (sum xlx(k_ij) + xlx(N) - xlx(k1*) - xlx(N - k1*) - xlx(k*1) - xlx(N - k*1))
+ * </pre>
+ * where k1* and k*1 are the marginal counts of the two terms and N is the number of documents.
+ * The marginal parts only depend on one term each so they are computed once per term, leaving
+ * four logarithms per co-occurrence.
+ * <p>
+ * Columns are scored in parallel, each with a {@link TopK} heap so nothing is allocated per
+ * candidate.
+ */
+public class Associates {
+    private static final int BLOCK_SIZE = 256;
+
+    private final double minScore;
+    private final int maxAssociates;
+
+    /**
+     * @param minScore      Co-occurrences must score more than this to be kept
+     * @param maxAssociates The most associates to keep for any term
+     */
+    public Associates(double minScore, int maxAssociates) {
+        if (maxAssociates <= 0) {
+            throw new IllegalArgumentException(String.format("Must keep at least one associate, got %d", maxAssociates));
+        }
+        this.minScore = minScore;
+        this.maxAssociates = maxAssociates;
+    }
+
+    /**
+     * Finds the associates of each term along with their scores.
+     *
+     * @param cooc   Symmetric matrix of how many documents have both term i and term j
+     * @param counts The number of documents containing each term
+     * @param total  The total number of documents
+     * @return A matrix with the same shape as cooc where column j has the LLR scores of the associates of term j
+     */
+    public SparseMatrix scores(SparseMatrix cooc, double[] counts, double total) {
+        return associates(cooc, counts, total, false);
+    }
+
+    /**
+     * Like {@link #scores(SparseMatrix, double[], double)}, but with a 1 for each associate instead of
+     * its score. Multiplying this by its transpose counts how many associates terms have in common.
+     */
+    public SparseMatrix indicators(SparseMatrix cooc, double[] counts, double total) {
+        return associates(cooc, counts, total, true);
+    }
+
+    private SparseMatrix associates(SparseMatrix cooc, double[] counts, double total, boolean binary) {
+        int nrows = cooc.nrows();
+        int ncols = cooc.ncols();
+        if (counts.length < Math.max(nrows, ncols)) {
+            throw new IllegalArgumentException(String.format("Need counts for %d terms, got %d", Math.max(nrows, ncols), counts.length));
+        }
+
+        double xLogXTotal = xLogX(total);
+        double[] marginal = new double[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            marginal[i] = xLogX(counts[i]) + xLogX(total - counts[i]);
+        }
+
+        int[][] rows = new int[ncols][];
+        double[][] values = new double[ncols][];
+        int blocks = (ncols + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            TopK top = new TopK(maxAssociates);
+            int end = Math.min(ncols, (block + 1) * BLOCK_SIZE);
+            for (int j = block * BLOCK_SIZE; j < end; j++) {
+                top.clear();
+                int word = j;
+                double kx1 = counts[j];
+                double base = xLogXTotal - marginal[j];
+                cooc.foreachNonzero(j, j + 1, (i, ignored, k11) -> {
+                    if (i != word) {
+                        double k12 = counts[i] - k11;
+                        double k21 = kx1 - k11;
+                        double k22 = total - k11 - k12 - k21;
+                        // rounding can leave tiny negative scores for independent terms
+                        double score = Math.max(0, 2 * (xLogX(k11) + xLogX(k12) + xLogX(k21) + xLogX(k22) + base - marginal[i]));
+                        if (score > minScore) {
+                            top.offer(i, score);
+                        }
+                    }
+                });
+
+                int m = top.size();
+                int[] r = new int[m];
+                double[] x = new double[m];
+                for (int k = 0; k < m; k++) {
+                    r[k] = top.id(k);
+                    x[k] = binary ? 1 : top.score(k);
+                }
+                Sort.sort(r, 0, m, x);
+                rows[j] = r;
+                values[j] = x;
+            }
+        });
+
+        int[] colIndex = new int[ncols + 1];
+        for (int j = 0; j < ncols; j++) {
+            colIndex[j + 1] = colIndex[j] + rows[j].length;
+        }
+        int[] rowIndex = new int[colIndex[ncols]];
+        double[] x = new double[colIndex[ncols]];
+        for (int j = 0; j < ncols; j++) {
+            System.arraycopy(rows[j], 0, rowIndex, colIndex[j], rows[j].length);
+            System.arraycopy(values[j], 0, x, colIndex[j], values[j].length);
+        }
+        return new SparseMatrix(nrows, ncols, x, rowIndex, colIndex);
+    }
+
+    /**
+     * Computes the log-likelihood ratio score for a 2x2 contingency table.
+     *
+     * @param k11 How many documents have both terms
+     * @param k12 How many have the first but not the second
+     * @param k21 How many have the second but not the first
+     * @param k22 How many have neither
+     * @return The score, which is large when the terms co-occur more (or less) than chance would explain
+     */
+    public static double llr(double k11, double k12, double k21, double k22) {
+        double row = xLogX(k11 + k12) + xLogX(k21 + k22);
+        double column = xLogX(k11 + k21) + xLogX(k12 + k22);
+        double cells = xLogX(k11) + xLogX(k12) + xLogX(k21) + xLogX(k22);
+        return Math.max(0, 2 * (cells + xLogX(k11 + k12 + k21 + k22) - row - column));
+    }
+
+    static double xLogX(double x) {
+        return x <= 0 ? 0 : x * Math.log(x);
+    }
+}
@@ -0,0 +1,79 @@
+package com.tdunning.examples;
+
+import smile.math.matrix.SparseMatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thread-safe way to accumulate i,j,x triples for a sparse matrix. Each thread that adds data
+ * gets its own {@link CooData} shard so the hot {@link #add(int, int, double)} path never takes
+ * a lock. The shards are compressed and combined with a k-way merge when the matrix is needed.
+ * <p>
+ * All calls to add must have completed (for instance, by the end of a parallel stream operation)
+ * before calling {@link #merge(CooData.ElementOrdering)} or {@link #asSparseMatrix()}. Merging
+ * doesn't consume the shards so more data can be added afterwards and merged again.
+ */
+public class ConcurrentCooData {
+    private final int nrows;
+    private final int ncols;
+    private final List<CooData> shards = new ArrayList<>();
+    private final ThreadLocal<CooData> shard = ThreadLocal.withInitial(this::newShard);
+
+    public ConcurrentCooData() {
+        this(-1, -1);
+    }
+
+    public ConcurrentCooData(int rows, int cols) {
+        this.nrows = rows;
+        this.ncols = cols;
+    }
+
+    private CooData newShard() {
+        CooData r = (nrows == -1 || ncols == -1) ? new CooData() : new CooData(nrows, ncols);
+        synchronized (shards) {
+            shards.add(r);
+        }
+        return r;
+    }
+
+    /**
+     * Adds a value to the value already at i,j. This can be called from any number of threads.
+     *
+     * @param i The row
+     * @param j The column
+     * @param x The increment to the value at A[i,j]
+     */
+    public void add(int i, int j, double x) {
+        shard.get().add(i, j, x);
+    }
+
+    /**
+     * Combines all of the data added so far by all threads.
+     *
+     * @param ordering How the result should be sorted
+     * @return The combined data, already compressed in the requested order
+     */
+    public CooData merge(CooData.ElementOrdering ordering) {
+        List<CooData> parts;
+        synchronized (shards) {
+            parts = new ArrayList<>(shards);
+        }
+        if (parts.isEmpty()) {
+            // a standalone result, so nothing is added to the shards
+            CooData empty = (nrows == -1 || ncols == -1) ? new CooData() : new CooData(nrows, ncols);
+            empty.compress(ordering, false);
+            return empty;
+        }
+        // the per-shard sorting is the expensive part and is independent for each shard
+        parts.parallelStream().forEach(part -> part.compress(ordering, false));
+        return CooData.merge(ordering, parts);
+    }
+
+    /**
+     * @return All of the data added so far as a column compressed sparse matrix
+     */
+    public SparseMatrix asSparseMatrix() {
+        return merge(CooData.ElementOrdering.BY_COL).asSparseMatrix();
+    }
+}
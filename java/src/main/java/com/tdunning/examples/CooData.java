@@ -1,8 +1,7 @@
 package com.tdunning.examples;
 
-import smile.math.matrix.SparseMatrix;
-
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Data structure that is used to build a sparse matrix if given a bunch of i,j,x triples.
@@ -11,35 +10,31 @@ import java.util.Arrays;
  * <p>
  * This is really inefficient for anything except accumulating entries. Any real processing will
  * need to be done by converting to csr or csc sparse formats. The SMILE SparseMatrix is a csc format.
+ * <p>
+ * If the values are all counts or all the same, {@link IntCooData}, {@link FloatCooData} or
+ * {@link PatternCooData} hold the same data in less memory.
  */
-public class CooData {
-    private int entriesAddedSinceCompression = 0;
-    private ElementOrdering lastOrdering = ElementOrdering.NONE;
-
-    int entries;
-    private int nrows;
-    private int ncols;
-    int[] rows;
-    int[] cols;
+public class CooData extends AbstractCooData<CooData> {
     double[] values;
 
     public CooData() {
-        nrows = -1;
-        ncols = -1;
-        init(100, 100);
+        this(-1, -1, 105);
     }
 
     public CooData(int rows, int cols) {
-        this.nrows = rows;
-        this.ncols = cols;
-        init(rows, cols);
+        this(rows, cols, Math.max(rows, cols) + 5);
     }
 
-    private void init(int rows, int cols) {
-        int n = Math.max(rows, cols) + 5;
-        this.rows = new int[n];
-        this.cols = new int[n];
-        this.values = new double[n];
+    /**
+     * Creates an empty CooData with room for a specific number of entries.
+     *
+     * @param rows     The number of rows or -1 if not known
+     * @param cols     The number of columns or -1 if not known
+     * @param capacity How many entries to allocate space for
+     */
+    CooData(int rows, int cols, int capacity) {
+        super(rows, cols, capacity);
+        values = new double[this.rows.length];
     }
 
     /**
@@ -50,163 +45,74 @@ public class CooData {
      * @param x The increment to the value at A[i,j]
      */
     public void add(int i, int j, double x) {
-        if (i < 0 || (nrows != -1 && i >= nrows)) {
-            throw new IllegalArgumentException(String.format("Invalid row %d (should be in [0,%d)", i, nrows));
-        }
-        if (j < 0 || (ncols != -1 && i >= ncols)) {
-            throw new IllegalArgumentException(String.format("Invalid row %d (should be in [0,%d)", j, ncols));
-        }
+        // nextEntry may reallocate values so it has to happen before we look at the array
+        int k = nextEntry(i, j);
+        values[k] = x;
+    }
 
-        if (entries >= rows.length) {
-            if (entriesAddedSinceCompression > entries / 4.0) {
-                compress(ElementOrdering.BY_COL, false);
-            }
-            int n = 2 * entries;
-            if (n > rows.length) {
-                rows = Arrays.copyOf(rows, n);
-                cols = Arrays.copyOf(cols, n);
-                values = Arrays.copyOf(values, n);
-            }
-        }
-        rows[entries] = i;
-        cols[entries] = j;
-        values[entries] = x;
-        entries++;
-        lastOrdering = ElementOrdering.NONE;
-        entriesAddedSinceCompression++;
+    @Override
+    void resizeValues(int n) {
+        values = Arrays.copyOf(values, n);
     }
 
-    /**
-     * Reorder and aggregate data and indexes to be a proper sparse matrix.
-     *
-     * @return The resulting matrix
-     */
-    public SparseMatrix asSparseMatrix() {
-        compress(ElementOrdering.BY_COL, false);
-        resolveSizing();
-
-        // data is now sorted by col, then row
-        // we just need to make a short column index
-        // note that we create one last element to point to the end of all data
-        int[] colIndex = new int[ncols + 1];
-        int last = -1;
-        int j = 0;
-        for (int k = 0; k < entries; ) {
-            assert rows[k] >= 0 && rows[k] < nrows;
-            assert cols[k] >= 0 && cols[k] < ncols;
-
-            while (j <= cols[k]) {
-                colIndex[j++] = k;
-            }
-            last = cols[k];
-            while (k < entries && cols[k] == last) {
-                k++;
-            }
-        }
-        colIndex[ncols] = entries;
-        return new SparseMatrix(nrows, ncols, values, rows, colIndex);
+    @Override
+    Object newValueScratch(int n) {
+        return new double[n];
     }
 
-    private void resolveSizing() {
-        if (ncols == -1 || nrows == -1) {
-            for (int k = 0; k < entries; k++) {
-                ncols = Math.max(ncols, cols[k] + 1);
-                nrows = Math.max(nrows, rows[k] + 1);
-            }
+    @Override
+    void scatterValues(int[] keys, int[] offsets, Object from, Object to) {
+        double[] src = (double[]) from;
+        double[] dst = (double[]) to;
+        for (int k = 0; k < entries; k++) {
+            dst[offsets[keys[k]]++] = src[k];
         }
     }
 
-    enum ElementOrdering {
-        NONE, BY_ROW, BY_COL
+    @Override
+    Object valueArray() {
+        return values;
     }
 
-    @SuppressWarnings("WeakerAccess")
-    public void compress(ElementOrdering elementOrdering, boolean force) {
-        if (!force && lastOrdering == elementOrdering) {
-            return;
-        }
-        entriesAddedSinceCompression = 0;
-        lastOrdering = elementOrdering;
-
-        int[] major;
-        int[] minor;
-        switch (elementOrdering) {
-            case BY_ROW:
-                major = this.rows;
-                minor = this.cols;
-                break;
-            case BY_COL:
-            default:
-                major = this.cols;
-                minor = this.rows;
-        }
-
-        // first sort everything in row order
-        int[] order = new int[entries];
-        Sort.sort(order, major, 0, entries);
-        untangle(order, major, 0, entries);
-        untangle(order, minor, 0, entries);
-        untangle(order, values, 0, entries);
-
-        // now scan through all the data
-        int fill = 0;
-        for (int i = 0; i < entries; ) {
-            // for each range of constant row number, sort by column
-            int j = i + 1;
-            while (j < entries && major[j] == major[i]) {
-                j++;
-            }
-            if (j > i + 1) {
-                Sort.sort(order, minor, i, j - i);
-                untangle(order, major, i, j);
-                untangle(order, minor, i, j);
-                untangle(order, values, i, j);
+    @Override
+    void collapseValues(int[] starts, int n) {
+        for (int f = 0; f < n; f++) {
+            double sum = 0;
+            for (int k = starts[f]; k < starts[f + 1]; k++) {
+                sum += values[k];
             }
+            values[f] = sum;
+        }
+    }
 
-            // and now collapse ranges of constant column number
-            for (int k = i; k < j; ) {
-                int r = major[k];
-                int c = minor[k];
-                double sum = 0;
-                for (; k < j && minor[k] == c; k++) {
-                    sum += values[k];
-                }
-                major[fill] = r;
-                minor[fill] = c;
-                values[fill] = sum;
-                fill++;
+    @Override
+    void addValues(List<CooData> parts, int[][] destinations) {
+        for (int p = 0; p < parts.size(); p++) {
+            CooData other = parts.get(p);
+            int[] to = destinations[p];
+            for (int k = 0; k < other.entries; k++) {
+                values[to[k]] += other.values[k];
             }
-            i = j;
         }
+    }
 
-        entries = fill;
+    @Override
+    void copyValues(CooData other, int to) {
+        System.arraycopy(other.values, 0, values, to, other.entries);
     }
 
-    private void untangle(int[] order, int[] values, int start, int end) {
-        int[] tmp = Arrays.copyOfRange(values, start, end);
-        for (int i = start; i < end; i++) {
-            tmp[i - start] = values[order[i]];
-        }
-        System.arraycopy(tmp, 0, values, start, end - start);
+    @Override
+    void takeValues(CooData other) {
+        values = other.values;
     }
 
-    private void untangle(int[] order, double[] values, int start, int end) {
-        double[] tmp = Arrays.copyOfRange(values, start, end);
-        for (int i = start; i < end; i++) {
-            tmp[i - start] = values[order[i]];
-        }
-        System.arraycopy(tmp, 0, values, start, end - start);
+    @Override
+    CooData create(int rows, int cols, int capacity) {
+        return new CooData(rows, cols, capacity);
     }
 
-    public void append(CooData other) {
-        if (entries + other.entries > rows.length) {
-            int n = entries + other.entries;
-            rows = Arrays.copyOf(rows, n);
-            cols = Arrays.copyOf(cols, n);
-            values = Arrays.copyOf(values, n);
-        }
-        System.arraycopy(rows, entries, other.rows, 0, other.entries);
-        System.arraycopy(cols, entries, other.cols, 0, other.entries);
-        System.arraycopy(values, entries, other.values, 0, other.entries);
+    @Override
+    double[] doubleValues(boolean copy) {
+        return copy ? Arrays.copyOf(values, entries) : values;
     }
 }
@@ -0,0 +1,255 @@
+package com.tdunning.examples;
+
+import smile.math.matrix.SparseMatrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Counts how many documents contain each pair of terms without building a document by term
+ * matrix first. The usual way is to accumulate the documents in a {@link CooData}, convert that
+ * to a {@link SparseMatrix} A and compute A'A. Here each document's set of distinct terms is
+ * turned directly into pair counts, which skips A entirely.
+ * <p>
+ * Only pairs i &lt; j are stored since the counts are symmetric, and they are stored in
+ * {@link IntCooData} shards, so each pair takes 12 bytes instead of the 32 it would take to
+ * accumulate it in both orders in a {@link CooData}. The diagonal is just the document count of
+ * each term, which is kept separately.
+ * <p>
+ * Like {@link ConcurrentCooData}, each thread adds to its own shard so {@link #add(int[], int)}
+ * can be called from a parallel stream. Shards start small and grow as pairs arrive, so nothing
+ * large is reserved before there is data to put in it. All calls to add must have completed before
+ * the results are requested. The first request combines the shards and releases their storage, so
+ * no more documents can be added after that. Dropping the storage matters because the shards are
+ * reachable from pool threads that outlive the builder.
+ * <p>
+ * The number of pairs grows with the square of the number of distinct terms in a document, so
+ * common terms should be downsampled before they get here.
+ */
+public class CooccurrenceBuilder {
+    // the most entries that a shard starts with, whatever is expected
+    private static final int MAX_INITIAL_CAPACITY = 1 << 16;
+
+    private final int terms;
+    private final int shardCapacity;
+    private final List<Shard> shards = new ArrayList<>();
+    private final ThreadLocal<Shard> shard = ThreadLocal.withInitial(this::newShard);
+
+    // the combined results, set once the shards have been consumed
+    private volatile boolean finished;
+    private IntCooData upper;
+    private double[] counts;
+    private int documents;
+
+    private static class Shard {
+        private IntCooData pairs;
+        private int[] counts;
+        private int documents;
+        private int[] distinct = new int[16];
+
+        Shard(int terms, int capacity) {
+            pairs = new IntCooData(terms, terms, capacity);
+            counts = new int[terms];
+        }
+    }
+
+    /**
+     * @param terms         The size of the vocabulary. All term ids must be less than this.
+     * @param expectedPairs About how many distinct pairs to expect. This sets the initial size of the
+     *                      shards up to a modest limit, beyond which they grow as needed.
+     */
+    public CooccurrenceBuilder(int terms, long expectedPairs) {
+        if (terms <= 0) {
+            throw new IllegalArgumentException(String.format("Vocabulary must not be empty, got %d terms", terms));
+        }
+        this.terms = terms;
+        long perShard = expectedPairs / Runtime.getRuntime().availableProcessors();
+        this.shardCapacity = (int) Math.max(1024, Math.min(perShard, MAX_INITIAL_CAPACITY));
+    }
+
+    private Shard newShard() {
+        Shard r = new Shard(terms, shardCapacity);
+        synchronized (shards) {
+            shards.add(r);
+        }
+        return r;
+    }
+
+    /**
+     * Adds a document given as term ids. Repeated terms only count once. This can be called from
+     * any number of threads.
+     *
+     * @param docTerms The ids of the terms in the document
+     */
+    public void add(int[] docTerms) {
+        add(docTerms, docTerms.length);
+    }
+
+    /**
+     * Adds a document given as the first n elements of an array of term ids.
+     */
+    public void add(int[] docTerms, int n) {
+        if (finished) {
+            throw new IllegalStateException("Can't add documents after the counts have been combined");
+        }
+        Shard s = shard.get();
+        if (s.distinct.length < n) {
+            s.distinct = new int[Math.max(n, 2 * s.distinct.length)];
+        }
+        int[] distinct = s.distinct;
+        System.arraycopy(docTerms, 0, distinct, 0, n);
+        Arrays.sort(distinct, 0, n);
+        int m = 0;
+        for (int k = 0; k < n; k++) {
+            int t = distinct[k];
+            if (t < 0 || t >= terms) {
+                throw new IllegalArgumentException(String.format("Invalid term %d (should be in [0,%d))", t, terms));
+            }
+            if (m == 0 || t != distinct[m - 1]) {
+                distinct[m++] = t;
+            }
+        }
+
+        s.documents++;
+        for (int a = 0; a < m; a++) {
+            int i = distinct[a];
+            s.counts[i]++;
+            // sorted, so every pair comes out with i < j
+            for (int b = a + 1; b < m; b++) {
+                s.pairs.add(i, distinct[b], 1);
+            }
+        }
+    }
+
+    private List<Shard> shards() {
+        synchronized (shards) {
+            return new ArrayList<>(shards);
+        }
+    }
+
+    /**
+     * @return The number of documents added so far
+     */
+    public int documents() {
+        if (finished) {
+            return documents;
+        }
+        int n = 0;
+        for (Shard s : shards()) {
+            n += s.documents;
+        }
+        return n;
+    }
+
+    /**
+     * @return How many documents contain each term
+     */
+    public double[] counts() {
+        if (finished) {
+            return counts.clone();
+        }
+        return sumCounts(shards());
+    }
+
+    private double[] sumCounts(List<Shard> parts) {
+        double[] r = new double[terms];
+        for (Shard s : parts) {
+            for (int i = 0; i < terms; i++) {
+                r[i] += s.counts[i];
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Combines the pair counts from all threads. After this, no more documents can be added.
+     *
+     * @return The count for each pair i &lt; j, compressed in column order. This is the same object each
+     * time and should not be changed.
+     */
+    public IntCooData upperTriangle() {
+        finish();
+        return upper;
+    }
+
+    /**
+     * Merges the shards and then drops their storage.
+     */
+    private synchronized void finish() {
+        if (finished) {
+            return;
+        }
+        List<Shard> parts = shards();
+        List<IntCooData> pairs = new ArrayList<>();
+        int n = 0;
+        for (Shard s : parts) {
+            pairs.add(s.pairs);
+            n += s.documents;
+        }
+        if (pairs.isEmpty()) {
+            upper = new IntCooData(terms, terms, 0);
+        } else {
+            pairs.parallelStream().forEach(part -> part.compress(CooData.ElementOrdering.BY_COL, false));
+            upper = IntCooData.merge(CooData.ElementOrdering.BY_COL, pairs);
+        }
+        counts = sumCounts(parts);
+        documents = n;
+        for (Shard s : parts) {
+            s.pairs = null;
+            s.counts = null;
+            s.distinct = null;
+        }
+        synchronized (shards) {
+            shards.clear();
+        }
+        finished = true;
+    }
+
+    /**
+     * Expands the counts into the full symmetric co-occurrence matrix with the document count of each
+     * term on the diagonal. This is the same as A'A where A is the binary document by term matrix.
+     *
+     * @return The co-occurrence counts as a column compressed matrix
+     */
+    public SparseMatrix asSparseMatrix() {
+        IntCooData upper = upperTriangle();
+        double[] counts = counts();
+        int n = upper.entries;
+        int[] rows = upper.rows;
+        int[] cols = upper.cols;
+        int[] values = upper.values;
+
+        // each upper entry (i, j) also appears as (j, i), plus one diagonal entry per term that occurs
+        int[] colIndex = new int[terms + 1];
+        for (int k = 0; k < n; k++) {
+            colIndex[cols[k] + 1]++;
+            colIndex[rows[k] + 1]++;
+        }
+        for (int j = 0; j < terms; j++) {
+            colIndex[j + 1] += colIndex[j] + (counts[j] > 0 ? 1 : 0);
+        }
+
+        // Scanning the upper triangle in column order writes each column in increasing row order. The
+        // entries above the diagonal of column j come from column j itself, then the diagonal, then the
+        // entries below it, which are mirrored from later columns as the scan reaches them.
+        int[] rowIndex = new int[colIndex[terms]];
+        double[] x = new double[colIndex[terms]];
+        int[] fill = Arrays.copyOf(colIndex, terms);
+        int k = 0;
+        for (int j = 0; j < terms; j++) {
+            for (; k < n && cols[k] == j; k++) {
+                int i = rows[k];
+                rowIndex[fill[j]] = i;
+                x[fill[j]++] = values[k];
+                rowIndex[fill[i]] = j;
+                x[fill[i]++] = values[k];
+            }
+            if (counts[j] > 0) {
+                rowIndex[fill[j]] = j;
+                x[fill[j]++] = counts[j];
+            }
+        }
+        return new SparseMatrix(terms, terms, x, rowIndex, colIndex);
+    }
+}
@@ -0,0 +1,166 @@
+package com.tdunning.examples;
+
+import smile.math.matrix.SparseMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Sparse matrix in compressed sparse row format. This is the row-wise twin of SMILE's
+ * {@link SparseMatrix}, which is column compressed. Kernels that work a row at a time, such as
+ * scoring a document or the Jacobi row sweep, can walk the non-zeros of each row as a contiguous
+ * range of memory.
+ * <p>
+ * The non-zeros of row i are at positions k from {@link #rowStart(int)} (inclusive) to
+ * {@link #rowEnd(int)} (exclusive) with column indexes in increasing order.
+ */
+public class CsrMatrix {
+    private final int nrows;
+    private final int ncols;
+    private final int[] rowPointers;
+    private final int[] columns;
+    private final double[] values;
+
+    /**
+     * Wraps existing arrays as a matrix. The arrays are not copied.
+     *
+     * @param nrows       The number of rows
+     * @param ncols       The number of columns
+     * @param rowPointers Where each row starts in the other arrays. This has nrows+1 elements and the last
+     *                    one is the total number of non-zeros.
+     * @param columns     The column index of each non-zero, sorted within each row
+     * @param values      The value of each non-zero
+     */
+    public CsrMatrix(int nrows, int ncols, int[] rowPointers, int[] columns, double[] values) {
+        if (rowPointers.length != nrows + 1) {
+            throw new IllegalArgumentException(String.format("Need %d row pointers, got %d", nrows + 1, rowPointers.length));
+        }
+        this.nrows = nrows;
+        this.ncols = ncols;
+        this.rowPointers = rowPointers;
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * Converts a column compressed matrix to row compressed form.
+     *
+     * @param a The matrix to convert
+     * @return A copy of a in CSR format
+     */
+    public static CsrMatrix from(SparseMatrix a) {
+        int nrows = a.nrows();
+        int n = a.size();
+        int[] rowPointers = new int[nrows + 1];
+        a.foreachNonzero((i, j, x) -> rowPointers[i + 1]++);
+        for (int i = 0; i < nrows; i++) {
+            rowPointers[i + 1] += rowPointers[i];
+        }
+
+        // columns come out in order so each row is automatically sorted
+        int[] fill = Arrays.copyOf(rowPointers, nrows);
+        int[] columns = new int[n];
+        double[] values = new double[n];
+        a.foreachNonzero((i, j, x) -> {
+            int k = fill[i]++;
+            columns[k] = j;
+            values[k] = x;
+        });
+        return new CsrMatrix(nrows, a.ncols(), rowPointers, columns, values);
+    }
+
+    public int nrows() {
+        return nrows;
+    }
+
+    public int ncols() {
+        return ncols;
+    }
+
+    /**
+     * @return The number of non-zeros
+     */
+    public int size() {
+        return rowPointers[nrows];
+    }
+
+    /**
+     * @param i The row
+     * @return The position of the first non-zero in row i
+     */
+    public int rowStart(int i) {
+        return rowPointers[i];
+    }
+
+    /**
+     * @param i The row
+     * @return The position just after the last non-zero in row i
+     */
+    public int rowEnd(int i) {
+        return rowPointers[i + 1];
+    }
+
+    /**
+     * @param k The position of a non-zero
+     * @return The column of that non-zero
+     */
+    public int column(int k) {
+        return columns[k];
+    }
+
+    /**
+     * @param k The position of a non-zero
+     * @return The value of that non-zero
+     */
+    public double value(int k) {
+        return values[k];
+    }
+
+    public double get(int i, int j) {
+        int k = Arrays.binarySearch(columns, rowPointers[i], rowPointers[i + 1], j);
+        return k >= 0 ? values[k] : 0;
+    }
+
+    /**
+     * Calls a function for every non-zero in row order.
+     */
+    public void foreachNonzero(EntryConsumer consumer) {
+        foreachNonzero(0, nrows, consumer);
+    }
+
+    /**
+     * Calls a function for every non-zero in a range of rows.
+     *
+     * @param beginRow The first row
+     * @param endRow   The row after the last one to visit
+     * @param consumer What to call
+     */
+    public void foreachNonzero(int beginRow, int endRow, EntryConsumer consumer) {
+        for (int i = beginRow; i < endRow; i++) {
+            for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                consumer.accept(i, columns[k], values[k]);
+            }
+        }
+    }
+
+    /**
+     * Computes y = A x.
+     *
+     * @param x The vector to multiply
+     * @param y Where to put the result
+     * @return y
+     */
+    public double[] ax(double[] x, double[] y) {
+        for (int i = 0; i < nrows; i++) {
+            double sum = 0;
+            for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                sum += values[k] * x[columns[k]];
+            }
+            y[i] = sum;
+        }
+        return y;
+    }
+
+    public interface EntryConsumer {
+        void accept(int i, int j, double x);
+    }
+}
@@ -0,0 +1,59 @@
+package com.tdunning.examples;
+
+import smile.math.matrix.SparseMatrix;
+
+import java.util.function.Consumer;
+
+/**
+ * A square matrix split into its diagonal and everything else, A = D + R. All of the iterative
+ * solvers work from this form. R is kept in row compressed form so that the update for each
+ * element of x walks one contiguous row.
+ */
+final class DiagonalSplit {
+    final int n;
+    final double[] diagonal;
+    final CsrMatrix offDiagonal;
+
+    static DiagonalSplit of(SparseMatrix a) {
+        return new DiagonalSplit(a.nrows(), a.ncols(), a.size(), consumer -> a.foreachNonzero(consumer::accept));
+    }
+
+    static DiagonalSplit of(CsrMatrix a) {
+        return new DiagonalSplit(a.nrows(), a.ncols(), a.size(), a::foreachNonzero);
+    }
+
+    private DiagonalSplit(int nrows, int ncols, int size, Consumer<CsrMatrix.EntryConsumer> entries) {
+        if (ncols != nrows) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+        n = nrows;
+        diagonal = new double[n];
+        CooData rest = new CooData(n, n, size);
+        entries.accept((i, j, value) -> {
+            if (i == j) {
+                diagonal[i] += value;
+            } else {
+                rest.add(i, j, value);
+            }
+        });
+        offDiagonal = rest.asCsrMatrix();
+        for (int i = 0; i < n; i++) {
+            if (diagonal[i] == 0) {
+                throw new IllegalArgumentException(String.format("Diagonal element %d is zero", i));
+            }
+        }
+    }
+
+    /**
+     * Computes y = A x for rows from start to end.
+     */
+    void ax(double[] x, double[] y, int start, int end) {
+        for (int i = start; i < end; i++) {
+            double sum = diagonal[i] * x[i];
+            for (int k = offDiagonal.rowStart(i); k < offDiagonal.rowEnd(i); k++) {
+                sum += offDiagonal.value(k) * x[offDiagonal.column(k)];
+            }
+            y[i] = sum;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.tdunning.examples;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A large file of documents, one per line, with tab separated fields where one of the fields holds
+ * the text of the document. The hotel review data has a date, a title and then the review.
+ * <p>
+ * The file is memory mapped and each document is exposed as a {@link Latin1CharSequence} that
+ * points straight into the mapped bytes. The file is assumed to be ISO-8859-1 so each byte is one
+ * character and nothing needs to be decoded or copied. Files larger than a single mapping are
+ * mapped as several segments that each end on a line boundary, so no document is ever split
+ * across segments.
+ * <p>
+ * The file is processed in byte ranges that always start and end on line boundaries. That lets
+ * {@link #documents()} give a stream that really can be split for parallel processing and lets
+ * {@link #countTerms()} count all the terms in the corpus using every core.
+ */
+public class DocumentFile implements Closeable {
+    private static final long MAX_SEGMENT = 1L << 30;
+
+    private final long length;
+    private final int field;
+    // segment k holds the lines in [starts[k], starts[k+1])
+    private final long[] starts;
+    private final ByteBuffer[] segments;
+    private long chunkSize;
+
+    /**
+     * Opens a file of tab-separated documents where the text is in the third field.
+     */
+    public DocumentFile(Path path) throws IOException {
+        this(path, 2);
+    }
+
+    /**
+     * Opens a file of tab-separated documents.
+     *
+     * @param path  The file to read
+     * @param field Which field (counting from 0) holds the text. This is the last field, so it can contain tabs.
+     */
+    public DocumentFile(Path path, int field) throws IOException {
+        this(path, field, MAX_SEGMENT);
+    }
+
+    DocumentFile(Path path, int field, long maxSegment) throws IOException {
+        this.field = field;
+        List<ByteBuffer> maps = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            length = channel.size();
+            long start = 0;
+            while (start < length) {
+                long size = Math.min(length - start, maxSegment);
+                MappedByteBuffer m = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                long end = start + size;
+                if (end < length) {
+                    // back up so that this segment ends just after a newline
+                    int k = (int) size - 1;
+                    while (k >= 0 && m.get(k) != '\n') {
+                        k--;
+                    }
+                    if (k < 0) {
+                        throw new IllegalArgumentException(String.format("Line at offset %d is too long", start));
+                    }
+                    end = start + k + 1;
+                }
+                maps.add(m);
+                offsets.add(start);
+                start = end;
+            }
+        }
+        offsets.add(length);
+        segments = maps.toArray(new ByteBuffer[0]);
+        starts = new long[offsets.size()];
+        for (int k = 0; k < starts.length; k++) {
+            starts[k] = offsets.get(k);
+        }
+
+        int threads = ForkJoinPool.getCommonPoolParallelism();
+        this.chunkSize = Math.max(1 << 20, length / (8 * threads));
+    }
+
+    /**
+     * Sets the size of the pieces that are processed as a single task. Mostly useful for testing.
+     */
+    void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns all of the documents in the file. The stream can be made parallel, in which case
+     * it will split on line boundaries. Each document is a view into the mapped file.
+     *
+     * @return A stream of document texts
+     */
+    public Stream<CharSequence> documents() {
+        return StreamSupport.stream(new DocumentSpliterator(0, length), false);
+    }
+
+    /**
+     * Counts all of the terms in all documents using the common fork-join pool.
+     *
+     * @return The counts
+     */
+    public TermCounter countTerms() {
+        return countTerms(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Counts all of the terms in all documents.
+     *
+     * @param pool The threads to use
+     * @return The counts
+     */
+    public TermCounter countTerms(ForkJoinPool pool) {
+        return pool.invoke(new CountTask(0, length));
+    }
+
+    /**
+     * Releases our references to the mapped file. The mapping itself goes away once no documents
+     * from this file are reachable.
+     */
+    @Override
+    public void close() {
+        Arrays.fill(segments, null);
+    }
+
+    private int segment(long position) {
+        int k = Arrays.binarySearch(starts, position);
+        return k >= 0 ? k : -k - 2;
+    }
+
+    /**
+     * Finds the first line start at or after a position.
+     *
+     * @param position Where to start looking
+     * @return The offset of the start of a line or the end of the file
+     */
+    long lineStart(long position) {
+        if (position <= 0) {
+            return 0;
+        }
+        if (position >= length) {
+            return length;
+        }
+        // the byte just before position tells us if position is already a line start
+        int k = segment(position - 1);
+        ByteBuffer buf = segments[k];
+        int end = (int) (starts[k + 1] - starts[k]);
+        for (int i = (int) (position - 1 - starts[k]); i < end; i++) {
+            if (buf.get(i) == '\n') {
+                return starts[k] + i + 1;
+            }
+        }
+        // segments end on line boundaries so we only get here at the end of the file
+        return starts[k + 1];
+    }
+
+    /**
+     * Goes through a range of the file that consists of whole lines and hands each document to an
+     * action. The same view object is reused for every document.
+     */
+    private void parse(long start, long end, Consumer<? super CharSequence> action) {
+        Latin1CharSequence view = null;
+        for (int k = segment(start); k < segments.length && starts[k] < end; k++) {
+            ByteBuffer buf = segments[k];
+            int i = (int) (Math.max(start, starts[k]) - starts[k]);
+            int limit = (int) (Math.min(end, starts[k + 1]) - starts[k]);
+            while (i < limit) {
+                int eol = endOfLine(buf, i, limit);
+                int textStart = textStart(buf, i, eol, starts[k]);
+                if (textStart >= 0) {
+                    if (view == null) {
+                        view = new Latin1CharSequence(buf, textStart, trimmedEnd(buf, i, eol) - textStart);
+                    } else {
+                        view.set(buf, textStart, trimmedEnd(buf, i, eol) - textStart);
+                    }
+                    action.accept(view);
+                }
+                i = eol + 1;
+            }
+        }
+    }
+
+    private static int endOfLine(ByteBuffer buf, int i, int limit) {
+        while (i < limit && buf.get(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    // drops a DOS style carriage return
+    private static int trimmedEnd(ByteBuffer buf, int lineStart, int eol) {
+        return (eol > lineStart && buf.get(eol - 1) == '\r') ? eol - 1 : eol;
+    }
+
+    /**
+     * Finds where the document field starts in a line.
+     *
+     * @return The offset of the text or -1 for a blank line
+     */
+    private int textStart(ByteBuffer buf, int lineStart, int eol, long base) {
+        int lineEnd = trimmedEnd(buf, lineStart, eol);
+        if (lineEnd == lineStart) {
+            return -1;
+        }
+        int i = lineStart;
+        for (int f = 0; f < field; f++) {
+            while (i < lineEnd && buf.get(i) != '\t') {
+                i++;
+            }
+            if (i >= lineEnd) {
+                throw new IllegalArgumentException(String.format("Couldn't find field %d at offset %d", field, base + lineStart));
+            }
+            i++;
+        }
+        return i;
+    }
+
+    @SuppressWarnings("serial")
+    private class CountTask extends RecursiveTask<TermCounter> {
+        private final long start;
+        private final long end;
+
+        CountTask(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected TermCounter compute() {
+            if (end - start > chunkSize) {
+                long mid = lineStart(start + (end - start) / 2);
+                if (mid > start && mid < end) {
+                    CountTask left = new CountTask(start, mid);
+                    CountTask right = new CountTask(mid, end);
+                    right.fork();
+                    TermCounter r = left.compute();
+                    return r.addAll(right.join());
+                }
+            }
+            TermCounter counts = new TermCounter();
+            parse(start, end, counts::addDocument);
+            return counts;
+        }
+    }
+
+    /**
+     * Walks through a range of the file one line at a time. Splitting divides the remaining
+     * range in half at a line boundary.
+     */
+    private class DocumentSpliterator implements Spliterator<CharSequence> {
+        private long start;
+        private final long end;
+
+        DocumentSpliterator(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super CharSequence> action) {
+            while (start < end) {
+                int k = segment(start);
+                ByteBuffer buf = segments[k];
+                int i = (int) (start - starts[k]);
+                int eol = endOfLine(buf, i, (int) (starts[k + 1] - starts[k]));
+                start = starts[k] + eol + 1;
+                int textStart = textStart(buf, i, eol, starts[k]);
+                if (textStart >= 0) {
+                    action.accept(new Latin1CharSequence(buf, textStart, trimmedEnd(buf, i, eol) - textStart));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<CharSequence> trySplit() {
+            if (end - start <= chunkSize) {
+                return null;
+            }
+            long mid = lineStart(start + (end - start) / 2);
+            if (mid <= start || mid >= end) {
+                return null;
+            }
+            DocumentSpliterator prefix = new DocumentSpliterator(start, mid);
+            start = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            // we don't know how many lines there are, but bytes are a good proxy for work
+            return end - start;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.tdunning.examples;
+
+import smile.math.matrix.SparseMatrix;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accumulates i,j,x triples like {@link CooData}, but within a fixed memory budget. When the
+ * in-memory buffer fills up, it is compressed and, if that doesn't free enough space, written to
+ * a temporary file as a sorted run. Reading the data back does a streaming k-way merge of all of
+ * the runs and whatever is left in memory, summing entries at the same location.
+ * <p>
+ * This allows co-occurrence counting over corpora where the raw triples would never fit on the
+ * heap. Only the final, fully aggregated matrix needs to fit in memory and
+ * {@link #forEachEntry(CsrMatrix.EntryConsumer)} doesn't even need that.
+ */
+public class ExternalCooData implements Closeable {
+    // each entry costs an int row, an int column and a double value, plus as much again during compression
+    private static final int BYTES_PER_ENTRY = 32;
+
+    private final int nrows;
+    private final int ncols;
+    private final CooData.ElementOrdering ordering;
+    private final Path tmpDir;
+    private final CooData buffer;
+    private final List<Path> runs = new ArrayList<>();
+
+    /**
+     * @param rows         The number of rows or -1 if not known
+     * @param cols         The number of columns or -1 if not known
+     * @param memoryBudget About how many bytes the in-memory buffer may use
+     * @param tmpDir       Where to put spilled runs
+     */
+    public ExternalCooData(int rows, int cols, long memoryBudget, Path tmpDir) {
+        this(rows, cols, memoryBudget, tmpDir, CooData.ElementOrdering.BY_COL);
+    }
+
+    /**
+     * @param rows         The number of rows or -1 if not known
+     * @param cols         The number of columns or -1 if not known
+     * @param memoryBudget About how many bytes the in-memory buffer may use
+     * @param tmpDir       Where to put spilled runs
+     * @param ordering     The order of the runs. Use BY_COL to build a SparseMatrix and BY_ROW to build a CsrMatrix.
+     */
+    public ExternalCooData(int rows, int cols, long memoryBudget, Path tmpDir, CooData.ElementOrdering ordering) {
+        if (ordering == CooData.ElementOrdering.NONE) {
+            throw new IllegalArgumentException("Runs need a real ordering");
+        }
+        long capacity = memoryBudget / BYTES_PER_ENTRY;
+        if (capacity < 16 || capacity > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(String.format("Memory budget of %d bytes is out of range", memoryBudget));
+        }
+        this.nrows = rows;
+        this.ncols = cols;
+        this.ordering = ordering;
+        this.tmpDir = tmpDir;
+        this.buffer = new CooData(rows, cols, (int) capacity);
+    }
+
+    /**
+     * Adds a value to the value already at i,j.
+     *
+     * @param i The row
+     * @param j The column
+     * @param x The increment to the value at A[i,j]
+     * @throws UncheckedIOException If a run had to be spilled and couldn't be written
+     */
+    public void add(int i, int j, double x) {
+        if (buffer.entries >= buffer.rows.length) {
+            buffer.compress(ordering, false);
+            // if compression doesn't buy us much room, it is time to spill
+            if (buffer.entries > buffer.rows.length * 3 / 4) {
+                spill();
+            }
+        }
+        buffer.add(i, j, x);
+    }
+
+    /**
+     * @return How many sorted runs have been written to disk
+     */
+    public int runs() {
+        return runs.size();
+    }
+
+    private void spill() {
+        buffer.compress(ordering, false);
+        try {
+            Path run = Files.createTempFile(tmpDir, "coo-run-", ".bin");
+            runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+                out.writeInt(buffer.entries);
+                for (int k = 0; k < buffer.entries; k++) {
+                    out.writeInt(buffer.rows[k]);
+                    out.writeInt(buffer.cols[k]);
+                    out.writeDouble(buffer.values[k]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Streams all of the aggregated entries in the order given to the constructor. Entries at the
+     * same location are summed, even if they came from different runs.
+     *
+     * @param consumer What to do with each entry
+     * @throws UncheckedIOException If the runs can't be read
+     */
+    public void forEachEntry(CsrMatrix.EntryConsumer consumer) {
+        buffer.compress(ordering, false);
+        List<Source> sources = new ArrayList<>();
+        try {
+            for (Path run : runs) {
+                sources.add(new RunSource(run));
+            }
+            sources.add(new BufferSource());
+
+            // heap of sources ordered by the key of their current entry
+            Source[] heap = new Source[sources.size()];
+            int n = 0;
+            for (Source source : sources) {
+                if (source.next()) {
+                    heap[n++] = source;
+                }
+            }
+            for (int i = n / 2 - 1; i >= 0; i--) {
+                siftDown(heap, n, i);
+            }
+
+            while (n > 0) {
+                long key = heap[0].key;
+                int row = heap[0].row;
+                int col = heap[0].col;
+                double sum = 0;
+                while (n > 0 && heap[0].key == key) {
+                    sum += heap[0].value;
+                    if (!heap[0].next()) {
+                        heap[0] = heap[--n];
+                    }
+                    siftDown(heap, n, 0);
+                }
+                consumer.accept(row, col, sum);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (Source source : sources) {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * Merges everything into a column compressed matrix. Only the aggregated result needs to fit in memory.
+     *
+     * @return The matrix
+     */
+    public SparseMatrix asSparseMatrix() {
+        if (ordering != CooData.ElementOrdering.BY_COL) {
+            throw new IllegalStateException("Runs must be sorted by column to build a SparseMatrix");
+        }
+        Builder b = build();
+        return new SparseMatrix(b.rowLimit, b.colLimit, b.values, b.minor, b.pointers(b.colLimit));
+    }
+
+    /**
+     * Merges everything into a row compressed matrix. Only the aggregated result needs to fit in memory.
+     *
+     * @return The matrix
+     */
+    public CsrMatrix asCsrMatrix() {
+        if (ordering != CooData.ElementOrdering.BY_ROW) {
+            throw new IllegalStateException("Runs must be sorted by row to build a CsrMatrix");
+        }
+        Builder b = build();
+        return new CsrMatrix(b.rowLimit, b.colLimit, b.pointers(b.rowLimit), b.minor, b.values);
+    }
+
+    private Builder build() {
+        Builder b = new Builder();
+        forEachEntry(b);
+        b.rowLimit = nrows != -1 ? nrows : b.rowLimit;
+        b.colLimit = ncols != -1 ? ncols : b.colLimit;
+        return b;
+    }
+
+    /**
+     * Deletes all of the spilled runs.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+        buffer.clear();
+    }
+
+    private static void siftDown(Source[] heap, int n, int i) {
+        Source p = heap[i];
+        while (2 * i + 1 < n) {
+            int child = 2 * i + 1;
+            if (child + 1 < n && heap[child + 1].key < heap[child].key) {
+                child++;
+            }
+            if (heap[child].key >= p.key) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = p;
+    }
+
+    /**
+     * Collects merged entries into compressed sparse arrays.
+     */
+    private class Builder implements CsrMatrix.EntryConsumer {
+        int entries = 0;
+        int rowLimit = 0;
+        int colLimit = 0;
+        int[] major = new int[1024];
+        int[] minor = new int[1024];
+        double[] values = new double[1024];
+
+        @Override
+        public void accept(int i, int j, double x) {
+            if (entries >= major.length) {
+                int n = 2 * entries;
+                major = Arrays.copyOf(major, n);
+                minor = Arrays.copyOf(minor, n);
+                values = Arrays.copyOf(values, n);
+            }
+            boolean byRow = ordering == CooData.ElementOrdering.BY_ROW;
+            major[entries] = byRow ? i : j;
+            minor[entries] = byRow ? j : i;
+            values[entries] = x;
+            entries++;
+            rowLimit = Math.max(rowLimit, i + 1);
+            colLimit = Math.max(colLimit, j + 1);
+        }
+
+        int[] pointers(int n) {
+            int[] r = new int[n + 1];
+            for (int k = 0; k < entries; k++) {
+                r[major[k] + 1]++;
+            }
+            for (int i = 0; i < n; i++) {
+                r[i + 1] += r[i];
+            }
+            minor = Arrays.copyOf(minor, entries);
+            values = Arrays.copyOf(values, entries);
+            return r;
+        }
+    }
+
+    private abstract class Source {
+        int row;
+        int col;
+        double value;
+        long key;
+
+        abstract boolean next() throws IOException;
+
+        void close() {
+        }
+
+        void setKey() {
+            if (ordering == CooData.ElementOrdering.BY_ROW) {
+                key = ((long) row << 32) | col;
+            } else {
+                key = ((long) col << 32) | row;
+            }
+        }
+    }
+
+    private class RunSource extends Source {
+        private final DataInputStream in;
+        private int remaining;
+
+        RunSource(Path run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+            remaining = in.readInt();
+        }
+
+        @Override
+        boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            row = in.readInt();
+            col = in.readInt();
+            value = in.readDouble();
+            setKey();
+            return true;
+        }
+
+        @Override
+        void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // nothing useful to do, we were only reading
+            }
+        }
+    }
+
+    private class BufferSource extends Source {
+        private int k = 0;
+
+        @Override
+        boolean next() {
+            if (k >= buffer.entries) {
+                return false;
+            }
+            row = buffer.rows[k];
+            col = buffer.cols[k];
+            value = buffer.values[k];
+            k++;
+            setKey();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.tdunning.examples;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accumulates i,j,x triples like {@link CooData}, but keeps the values as floats. This cuts the
+ * memory per entry from 16 to 12 bytes, which also means less data to move while sorting. Sums
+ * are accumulated in double and rounded once per entry.
+ */
+public class FloatCooData extends AbstractCooData<FloatCooData> {
+    float[] values;
+
+    public FloatCooData() {
+        this(-1, -1, 105);
+    }
+
+    public FloatCooData(int rows, int cols) {
+        this(rows, cols, Math.max(rows, cols) + 5);
+    }
+
+    FloatCooData(int rows, int cols, int capacity) {
+        super(rows, cols, capacity);
+        values = new float[this.rows.length];
+    }
+
+    /**
+     * Adds a value to the value already at i,j.
+     *
+     * @param i The row
+     * @param j The column
+     * @param x The increment to the value at A[i,j]
+     */
+    public void add(int i, int j, float x) {
+        int k = nextEntry(i, j);
+        values[k] = x;
+    }
+
+    @Override
+    void resizeValues(int n) {
+        values = Arrays.copyOf(values, n);
+    }
+
+    @Override
+    Object newValueScratch(int n) {
+        return new float[n];
+    }
+
+    @Override
+    void scatterValues(int[] keys, int[] offsets, Object from, Object to) {
+        float[] src = (float[]) from;
+        float[] dst = (float[]) to;
+        for (int k = 0; k < entries; k++) {
+            dst[offsets[keys[k]]++] = src[k];
+        }
+    }
+
+    @Override
+    Object valueArray() {
+        return values;
+    }
+
+    @Override
+    void collapseValues(int[] starts, int n) {
+        for (int f = 0; f < n; f++) {
+            double sum = 0;
+            for (int k = starts[f]; k < starts[f + 1]; k++) {
+                sum += values[k];
+            }
+            values[f] = (float) sum;
+        }
+    }
+
+    @Override
+    void addValues(List<FloatCooData> parts, int[][] destinations) {
+        // duplicates from different parts are summed in double like collapseValues does
+        double[] sums = new double[entries];
+        for (int k = 0; k < entries; k++) {
+            sums[k] = values[k];
+        }
+        for (int p = 0; p < parts.size(); p++) {
+            FloatCooData other = parts.get(p);
+            int[] to = destinations[p];
+            for (int k = 0; k < other.entries; k++) {
+                sums[to[k]] += other.values[k];
+            }
+        }
+        for (int k = 0; k < entries; k++) {
+            values[k] = (float) sums[k];
+        }
+    }
+
+    @Override
+    void copyValues(FloatCooData other, int to) {
+        System.arraycopy(other.values, 0, values, to, other.entries);
+    }
+
+    @Override
+    void takeValues(FloatCooData other) {
+        values = other.values;
+    }
+
+    @Override
+    FloatCooData create(int rows, int cols, int capacity) {
+        return new FloatCooData(rows, cols, capacity);
+    }
+
+    @Override
+    double[] doubleValues(boolean copy) {
+        double[] r = new double[entries];
+        for (int k = 0; k < entries; k++) {
+            r[k] = values[k];
+        }
+        return r;
+    }
+}
@@ -0,0 +1,142 @@
+package com.tdunning.examples;
+
+import java.util.Arrays;
+
+/**
+ * Converts documents to sparse vectors of a fixed dimension using the hash trick instead of a
+ * dictionary. Each token is hashed straight from the characters of the document, so there is no
+ * vocabulary to build or to keep in memory, and no String is allocated per token. Terms are
+ * normalized to lower case the same way {@link TermDictionary} does it.
+ * <p>
+ * With one probe this is one-hot encoding into a vector of the given dimension except that
+ * unrelated terms sometimes collide. With k probes, each term sets k positions, which makes it
+ * much less likely that two terms look identical, the same way a Bloom filter works. With signed
+ * hashing, each position gets +1 or -1 depending on a further bit of the hash so that collisions
+ * cancel out on average instead of piling up. That keeps inner products between hashed vectors
+ * unbiased estimates of the inner products between the original one-hot vectors.
+ * <p>
+ * The probes are generated by double hashing from a single hash of each token. Instances are
+ * immutable and can be shared between threads.
+ */
+public class HashingVectorizer {
+    private static final ThreadLocal<Tokenizer> tokenizers = ThreadLocal.withInitial(Tokenizer::new);
+    private static final ThreadLocal<int[][]> scratch = ThreadLocal.withInitial(() -> new int[1][64]);
+
+    private final int dimension;
+    private final int probes;
+    private final boolean signed;
+    private final int seed;
+
+    /**
+     * Unsigned one-hot hashing with a single probe.
+     *
+     * @param dimension The size of the vectors to produce
+     */
+    public HashingVectorizer(int dimension) {
+        this(dimension, 1, false, 0);
+    }
+
+    /**
+     * @param dimension The size of the vectors to produce
+     * @param probes    How many positions each term sets
+     * @param signed    Whether each position gets a random sign
+     * @param seed      Different seeds give independent hash functions
+     */
+    public HashingVectorizer(int dimension, int probes, boolean signed, int seed) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException(String.format("Dimension must be positive, got %d", dimension));
+        }
+        if (probes <= 0 || probes > dimension) {
+            throw new IllegalArgumentException(String.format("Number of probes must be in [1,%d], got %d", dimension, probes));
+        }
+        this.dimension = dimension;
+        this.probes = probes;
+        this.signed = signed;
+        this.seed = seed;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Encodes the terms of a document without regard to how often each one occurs.
+     *
+     * @param s      The document
+     * @param result Where to put the result. Any previous contents are overwritten.
+     * @return The result vector with the probes of each distinct term in the document
+     */
+    public SparseVector vectorize(CharSequence s, SparseVector result) {
+        Tokenizer tokenizer = tokenizers.get();
+        int n = tokenizer.tokenize(s);
+        int[][] buffer = scratch.get();
+        if (buffer[0].length < n) {
+            buffer[0] = new int[Math.max(n, 2 * buffer[0].length)];
+        }
+        int[] hashes = buffer[0];
+        for (int k = 0; k < n; k++) {
+            hashes[k] = TermDictionary.hash(s, tokenizer.start(k), tokenizer.end(k));
+        }
+        // distinct hashes stand in for distinct terms; collisions of the full 32 bits are rare
+        Arrays.sort(hashes, 0, n);
+        result.reserve(n * probes);
+        int m = 0;
+        for (int k = 0; k < n; k++) {
+            if (k == 0 || hashes[k] != hashes[k - 1]) {
+                m = encode(hashes[k], result, m);
+            }
+        }
+        result.collapseSums(m);
+        return result;
+    }
+
+    /**
+     * Encodes the terms of a document weighted by how often each one occurs.
+     *
+     * @param s      The document
+     * @param result Where to put the result. Any previous contents are overwritten.
+     * @return The result vector with the probes of each term added once per occurrence
+     */
+    public SparseVector count(CharSequence s, SparseVector result) {
+        Tokenizer tokenizer = tokenizers.get();
+        int n = tokenizer.tokenize(s);
+        result.reserve(n * probes);
+        int m = 0;
+        for (int k = 0; k < n; k++) {
+            m = encode(TermDictionary.hash(s, tokenizer.start(k), tokenizer.end(k)), result, m);
+        }
+        result.collapseSums(m);
+        return result;
+    }
+
+    /**
+     * Encodes a single term.
+     *
+     * @param term   The term
+     * @param result Where to put the result. Any previous contents are overwritten.
+     * @return The result vector with the probes for the term
+     */
+    public SparseVector encode(CharSequence term, SparseVector result) {
+        result.reserve(probes);
+        result.collapseSums(encode(TermDictionary.hash(term, 0, term.length()), result, 0));
+        return result;
+    }
+
+    /**
+     * Writes the probes for a term with hash h into result starting at position m.
+     *
+     * @return The position after the last probe
+     */
+    private int encode(int h, SparseVector result, int m) {
+        int h1 = TermDictionary.mix(h ^ seed);
+        // odd so that successive probes step through all the bits of the hash
+        int h2 = TermDictionary.mix(h1 + 0x9e3779b9) | 1;
+        for (int p = 0; p < probes; p++) {
+            int g = TermDictionary.mix(h1 + p * h2);
+            result.index[m] = (g >>> 1) % dimension;
+            result.values[m] = signed && (g & 1) != 0 ? -1 : 1;
+            m++;
+        }
+        return m;
+    }
+}
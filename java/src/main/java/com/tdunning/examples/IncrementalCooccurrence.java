@@ -0,0 +1,290 @@
+package com.tdunning.examples;
+
+import smile.math.matrix.SparseMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates document and co-occurrence counts as documents arrive and keeps the LLR associates
+ * of each term (see {@link Associates}) up to date without recounting the corpus.
+ * <p>
+ * Adding a document updates the count of each distinct term in it and the co-occurrence count of
+ * each pair of those terms, so the cost of adding a document depends only on that document. The
+ * terms touched since the last {@link #refresh()} are remembered and a refresh rescores just those
+ * terms, so the cost of a refresh is proportional to the new data, not to the size of the corpus.
+ * <p>
+ * This means a refresh is an approximation. The score of a pair also depends on the total number
+ * of documents and on the count of the other term, so the associates of a term that didn't appear
+ * in any new document can drift a little out of date. {@link #refreshAll()} rescores everything.
+ * <p>
+ * This class is not thread safe.
+ */
+public class IncrementalCooccurrence {
+    private final double minScore;
+    private final int maxAssociates;
+    private final Tokenizer tokenizer = new Tokenizer();
+
+    private int documents;
+    private int terms;
+    private int[] counts = new int[16];
+    private IntCounts[] pairs = new IntCounts[16];
+
+    // terms whose counts have changed since the last refresh
+    private boolean[] dirty = new boolean[16];
+    private int[] dirtyTerms = new int[16];
+    private int dirtyCount;
+
+    // current associates of each term, sorted by id
+    private int[][] associates = new int[16][];
+    private double[][] scores = new double[16][];
+
+    // the marginal part of the score for each term, valid if marginalStamp matches generation
+    private double[] marginal = new double[16];
+    private int[] marginalStamp = new int[16];
+    private int generation;
+
+    // scratch space for a document's distinct terms
+    private int[] distinct = new int[16];
+
+    /**
+     * @param minScore      Co-occurrences must score more than this to count as associates
+     * @param maxAssociates The most associates to keep for any term
+     */
+    public IncrementalCooccurrence(double minScore, int maxAssociates) {
+        if (maxAssociates <= 0) {
+            throw new IllegalArgumentException(String.format("Must keep at least one associate, got %d", maxAssociates));
+        }
+        this.minScore = minScore;
+        this.maxAssociates = maxAssociates;
+    }
+
+    /**
+     * Adds a document given as term ids. Repeated terms only count once.
+     *
+     * @param docTerms The ids of the terms in the document
+     */
+    public void add(int[] docTerms) {
+        add(docTerms, docTerms.length);
+    }
+
+    /**
+     * Adds a document given as the first n elements of an array of term ids.
+     */
+    public void add(int[] docTerms, int n) {
+        if (distinct.length < n) {
+            distinct = new int[Math.max(n, 2 * distinct.length)];
+        }
+        System.arraycopy(docTerms, 0, distinct, 0, n);
+        Arrays.sort(distinct, 0, n);
+        int m = 0;
+        for (int k = 0; k < n; k++) {
+            int t = distinct[k];
+            if (t < 0) {
+                throw new IllegalArgumentException(String.format("Term ids must be non-negative, got %d", t));
+            }
+            if (m == 0 || t != distinct[m - 1]) {
+                distinct[m++] = t;
+            }
+        }
+        if (m > 0) {
+            ensureTerms(distinct[m - 1] + 1);
+        }
+
+        documents++;
+        for (int a = 0; a < m; a++) {
+            int i = distinct[a];
+            counts[i]++;
+            if (!dirty[i]) {
+                dirty[i] = true;
+                if (dirtyCount == dirtyTerms.length) {
+                    dirtyTerms = Arrays.copyOf(dirtyTerms, 2 * dirtyCount);
+                }
+                dirtyTerms[dirtyCount++] = i;
+            }
+            IntCounts p = pairs[i];
+            if (p == null) {
+                p = pairs[i] = new IntCounts();
+            }
+            for (int b = 0; b < m; b++) {
+                if (b != a) {
+                    p.add(distinct[b], 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tokenizes a document and adds it. New terms are added to the dictionary, which must not be frozen.
+     *
+     * @param dictionary Maps terms to ids
+     * @param doc        The text of the document
+     */
+    public void add(TermDictionary dictionary, CharSequence doc) {
+        int n = tokenizer.tokenize(doc);
+        int[] ids = new int[n];
+        for (int k = 0; k < n; k++) {
+            ids[k] = dictionary.add(doc, tokenizer.start(k), tokenizer.end(k));
+        }
+        add(ids, n);
+    }
+
+    private void ensureTerms(int n) {
+        if (n > counts.length) {
+            int size = Math.max(n, 2 * counts.length);
+            counts = Arrays.copyOf(counts, size);
+            pairs = Arrays.copyOf(pairs, size);
+            dirty = Arrays.copyOf(dirty, size);
+            associates = Arrays.copyOf(associates, size);
+            scores = Arrays.copyOf(scores, size);
+            marginal = Arrays.copyOf(marginal, size);
+            marginalStamp = Arrays.copyOf(marginalStamp, size);
+        }
+        terms = Math.max(terms, n);
+    }
+
+    /**
+     * Rescores the associates of each term that has appeared in a document since the last refresh.
+     *
+     * @return How many terms were rescored
+     */
+    public int refresh() {
+        int n = dirtyCount;
+        rescore(Arrays.copyOf(dirtyTerms, n));
+        return n;
+    }
+
+    /**
+     * Rescores the associates of every term.
+     */
+    public void refreshAll() {
+        int[] all = new int[terms];
+        for (int i = 0; i < terms; i++) {
+            all[i] = i;
+        }
+        rescore(all);
+    }
+
+    private void rescore(int[] targets) {
+        double xLogXTotal = Associates.xLogX(documents);
+        // the marginal part of the score for each term is computed at most once per refresh
+        generation++;
+
+        TopK top = new TopK(maxAssociates);
+        for (int j : targets) {
+            top.clear();
+            double kx1 = counts[j];
+            double base = xLogXTotal - marginal(j);
+            IntCounts p = pairs[j];
+            if (p != null) {
+                for (int slot = 0; slot < p.capacity(); slot++) {
+                    int i = p.key(slot);
+                    if (i >= 0) {
+                        double k11 = p.count(slot);
+                        double k12 = counts[i] - k11;
+                        double k21 = kx1 - k11;
+                        double k22 = documents - k11 - k12 - k21;
+                        double score = Math.max(0, 2 * (Associates.xLogX(k11) + Associates.xLogX(k12) +
+                                Associates.xLogX(k21) + Associates.xLogX(k22) + base - marginal(i)));
+                        if (score > minScore) {
+                            top.offer(i, score);
+                        }
+                    }
+                }
+            }
+
+            int m = top.size();
+            int[] r = new int[m];
+            double[] x = new double[m];
+            for (int k = 0; k < m; k++) {
+                r[k] = top.id(k);
+                x[k] = top.score(k);
+            }
+            Sort.sort(r, 0, m, x);
+            associates[j] = r;
+            scores[j] = x;
+        }
+
+        for (int k = 0; k < dirtyCount; k++) {
+            dirty[dirtyTerms[k]] = false;
+        }
+        dirtyCount = 0;
+    }
+
+    private double marginal(int i) {
+        if (marginalStamp[i] != generation) {
+            marginal[i] = Associates.xLogX(counts[i]) + Associates.xLogX(documents - counts[i]);
+            marginalStamp[i] = generation;
+        }
+        return marginal[i];
+    }
+
+    /**
+     * @return The number of documents added so far
+     */
+    public int documents() {
+        return documents;
+    }
+
+    /**
+     * @return One more than the largest term id seen so far
+     */
+    public int terms() {
+        return terms;
+    }
+
+    /**
+     * @return How many documents contain term i
+     */
+    public int count(int i) {
+        return i < terms ? counts[i] : 0;
+    }
+
+    /**
+     * @return How many documents contain both term i and term j (i != j)
+     */
+    public int count(int i, int j) {
+        return i < terms && pairs[i] != null ? pairs[i].get(j) : 0;
+    }
+
+    /**
+     * @return The number of terms waiting to be rescored
+     */
+    public int pending() {
+        return dirtyCount;
+    }
+
+    /**
+     * @return A terms x terms matrix where column j has the LLR scores of the associates of term j as of
+     * the last time j was rescored
+     */
+    public SparseMatrix scores() {
+        return asSparseMatrix(false);
+    }
+
+    /**
+     * @return Like {@link #scores()}, but with a 1 for each associate instead of its score
+     */
+    public SparseMatrix indicators() {
+        return asSparseMatrix(true);
+    }
+
+    private SparseMatrix asSparseMatrix(boolean binary) {
+        int[] colIndex = new int[terms + 1];
+        for (int j = 0; j < terms; j++) {
+            colIndex[j + 1] = colIndex[j] + (associates[j] == null ? 0 : associates[j].length);
+        }
+        int[] rowIndex = new int[colIndex[terms]];
+        double[] x = new double[colIndex[terms]];
+        for (int j = 0; j < terms; j++) {
+            if (associates[j] != null) {
+                System.arraycopy(associates[j], 0, rowIndex, colIndex[j], associates[j].length);
+                if (binary) {
+                    Arrays.fill(x, colIndex[j], colIndex[j + 1], 1);
+                } else {
+                    System.arraycopy(scores[j], 0, x, colIndex[j], scores[j].length);
+                }
+            }
+        }
+        return new SparseMatrix(terms, terms, x, rowIndex, colIndex);
+    }
+}
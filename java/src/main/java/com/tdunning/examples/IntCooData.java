@@ -0,0 +1,108 @@
+package com.tdunning.examples;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accumulates i,j,x triples like {@link CooData}, but with integer values. This is the natural
+ * choice for counts such as term frequencies or co-occurrences and needs 12 bytes per entry
+ * instead of 16. Summed counts must fit in an int.
+ */
+public class IntCooData extends AbstractCooData<IntCooData> {
+    int[] values;
+
+    public IntCooData() {
+        this(-1, -1, 105);
+    }
+
+    public IntCooData(int rows, int cols) {
+        this(rows, cols, Math.max(rows, cols) + 5);
+    }
+
+    IntCooData(int rows, int cols, int capacity) {
+        super(rows, cols, capacity);
+        values = new int[this.rows.length];
+    }
+
+    /**
+     * Adds a count to the count already at i,j.
+     *
+     * @param i The row
+     * @param j The column
+     * @param x The increment to the count at A[i,j]
+     */
+    public void add(int i, int j, int x) {
+        int k = nextEntry(i, j);
+        values[k] = x;
+    }
+
+    @Override
+    void resizeValues(int n) {
+        values = Arrays.copyOf(values, n);
+    }
+
+    @Override
+    Object newValueScratch(int n) {
+        return new int[n];
+    }
+
+    @Override
+    void scatterValues(int[] keys, int[] offsets, Object from, Object to) {
+        int[] src = (int[]) from;
+        int[] dst = (int[]) to;
+        for (int k = 0; k < entries; k++) {
+            dst[offsets[keys[k]]++] = src[k];
+        }
+    }
+
+    @Override
+    Object valueArray() {
+        return values;
+    }
+
+    @Override
+    void collapseValues(int[] starts, int n) {
+        for (int f = 0; f < n; f++) {
+            int sum = 0;
+            for (int k = starts[f]; k < starts[f + 1]; k++) {
+                sum += values[k];
+            }
+            values[f] = sum;
+        }
+    }
+
+    @Override
+    void addValues(List<IntCooData> parts, int[][] destinations) {
+        for (int p = 0; p < parts.size(); p++) {
+            IntCooData other = parts.get(p);
+            int[] to = destinations[p];
+            for (int k = 0; k < other.entries; k++) {
+                values[to[k]] += other.values[k];
+            }
+        }
+    }
+
+    @Override
+    void copyValues(IntCooData other, int to) {
+        System.arraycopy(other.values, 0, values, to, other.entries);
+    }
+
+    @Override
+    void takeValues(IntCooData other) {
+        values = other.values;
+    }
+
+    @Override
+    IntCooData create(int rows, int cols, int capacity) {
+        return new IntCooData(rows, cols, capacity);
+    }
+
+    @Override
+    double[] doubleValues(boolean copy) {
+        double[] r = new double[entries];
+        for (int k = 0; k < entries; k++) {
+            r[k] = values[k];
+        }
+        return r;
+    }
+}
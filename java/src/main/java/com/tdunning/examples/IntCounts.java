@@ -0,0 +1,100 @@
+package com.tdunning.examples;
+
+import java.util.Arrays;
+
+/**
+ * Counts keyed by non-negative ints in an open-addressed hash table made of two int arrays. This
+ * is much smaller than a HashMap and increments don't allocate anything, which matters when there
+ * is one of these for every term in a vocabulary.
+ * <p>
+ * To visit all the counts, loop over slots 0 to {@link #capacity()} and skip the ones where
+ * {@link #key(int)} is negative.
+ */
+final class IntCounts {
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] counts;
+    private int mask;
+    private int size;
+
+    IntCounts() {
+        keys = new int[4];
+        Arrays.fill(keys, EMPTY);
+        counts = new int[4];
+        mask = 3;
+    }
+
+    /**
+     * Adds delta to the count for key, starting from zero if the key is new.
+     */
+    void add(int key, int delta) {
+        int slot = TermDictionary.mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                counts[slot] += delta;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        counts[slot] = delta;
+        size++;
+        // keep the table at most half full so probes stay short
+        if (2 * size > keys.length) {
+            rehash(2 * keys.length);
+        }
+    }
+
+    /**
+     * @return The count for key or zero if there is none
+     */
+    int get(int key) {
+        int slot = TermDictionary.mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * @return The key in a slot, or a negative number if the slot is empty
+     */
+    int key(int slot) {
+        return keys[slot];
+    }
+
+    int count(int slot) {
+        return counts[slot];
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        counts = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = TermDictionary.mix(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+}
@@ -2,60 +2,392 @@ package com.tdunning.examples;
 
 import smile.math.matrix.SparseMatrix;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * Classic iterative solver for sparse systems. This converges if the matrix A is diagonally dominant or if
  * it is symmetrical and positive definite.
+ * <p>
+ * The diagonal and the off-diagonal part of A are split apart once when the solver is created. The off-diagonal
+ * part is kept in row compressed form so each element of the new x is a dot product over one contiguous row.
+ * Since every row of a Jacobi sweep depends only on the previous x, large systems are updated in blocks of rows
+ * in parallel.
+ * <p>
+ * When the same system has to be solved for many right hand sides, {@link #solve(double[][], double, int, SolverMonitor)}
+ * does them all in one pass over the matrix per sweep.
  */
-public class Jacobi {
-    private SparseMatrix a;
+public class Jacobi implements Solver {
+    private static final int BLOCK_SIZE = 2048;
+    // eight doubles fill a cache line
+    private static final int GROUP_SIZE = 8;
+
+    private final int n;
+    private final double[] diagonal;
+    private final CsrMatrix offDiagonal;
 
     public Jacobi(SparseMatrix a) {
-        if (a.ncols() != a.nrows()) {
-            throw new IllegalArgumentException("Matrix must be square");
-        }
-        this.a = a;
+        this(DiagonalSplit.of(a));
     }
 
-    public double[] solve(double[] b) {
-        return solve(b, 1e-10, 10000);
+    public Jacobi(CsrMatrix a) {
+        this(DiagonalSplit.of(a));
     }
 
-    public double[] solve(double[] b, double tolerance, int maxIteration) {
-        final int n = a.ncols();
+    private Jacobi(DiagonalSplit a) {
+        n = a.n;
+        diagonal = a.diagonal;
+        offDiagonal = a.offDiagonal;
+    }
+
+    @Override
+    public double[] solve(double[] b, double tolerance, int maxIteration, SolverMonitor monitor) {
         if (b.length != n) {
             throw new IllegalArgumentException("Must have b vector same size as matrix");
         }
 
+        // two buffers for x that trade places after each sweep
         double[] x = new double[n];
-        double[] diagonal = new double[n];
-        a.foreachNonzero((i, j, value) -> {
-            if (i == j) {
-                diagonal[i] = value;
-            }
-        });
+        double[] next = new double[n];
+
+        int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        double[] change = new double[blocks];
+        double[] residual = new double[blocks];
 
         double dMax = Double.POSITIVE_INFINITY;
         int iteration = 0;
         while (dMax > tolerance && iteration < maxIteration) {
-            // z = b - Rx, where R is A except for diagonal elements
-            double[] tmp = Arrays.copyOf(b, n);
-            a.foreachNonzero((i, j, value) -> {
-                if (i != j) {
-                    tmp[i] -= value * x[j];
+            long t0 = System.nanoTime();
+            double[] in = x;
+            double[] out = next;
+            if (blocks > 1) {
+                IntStream.range(0, blocks).parallel().forEach(block -> sweep(block, b, in, out, change, residual));
+            } else {
+                for (int block = 0; block < blocks; block++) {
+                    sweep(block, b, in, out, change, residual);
                 }
-            });
+            }
+            x = out;
+            next = in;
 
             dMax = 0;
-            for (int i = 0; i < n; i++) {
-                double v = tmp[i] / diagonal[i];
-                dMax = Math.max(Math.abs(x[i] - v), dMax);
-                x[i] = v;
+            double r2 = 0;
+            for (int block = 0; block < blocks; block++) {
+                dMax = Math.max(dMax, change[block]);
+                r2 += residual[block];
             }
             iteration++;
-            System.out.printf("%10.2f\n", dMax);
+            if (monitor != null) {
+                monitor.iteration(iteration, dMax, Math.sqrt(r2), System.nanoTime() - t0);
+            }
         }
         return x;
     }
+
+    public double[][] solve(double[][] b) {
+        return solve(b, 1e-10, 10000, null);
+    }
+
+    /**
+     * Solves A x = b for several right hand sides at once. The right hand sides are interleaved
+     * in groups of eight so that each non-zero of A is read once per sweep for a whole group, rather
+     * than once per sweep for each right hand side, and each cache line of x that a non-zero refers
+     * to serves the whole group. The update for a full group is unrolled so that it can compile into
+     * vector instructions.
+     * <p>
+     * This pays off once a single x no longer fits in the per-core caches, which for typical hardware
+     * means systems with a few hundred thousand rows or more. For small systems, solving for each right
+     * hand side separately can be faster.
+     * <p>
+     * Each solution stops being updated as soon as it converges by itself and the arithmetic is
+     * done in the same order, so the results are identical to solving for each right hand side
+     * separately.
+     *
+     * @param b            The right hand sides, b[c] is the c-th vector
+     * @param tolerance    Iteration stops for each solution when none of its elements change by more than this
+     * @param maxIteration Iteration stops after this many sweeps regardless of convergence
+     * @param monitor      Told about each sweep. The change is the largest over all solutions still being
+     *                     updated and the residual is the 2-norm over all of those solutions together. Can be null.
+     * @return The solutions, x[c] solves A x = b[c]
+     */
+    public double[][] solve(double[][] b, double tolerance, int maxIteration, SolverMonitor monitor) {
+        for (double[] column : b) {
+            if (column.length != n) {
+                throw new IllegalArgumentException("Must have b vectors same size as matrix");
+            }
+        }
+        // solutions are kept here when they are finished or when the groups are repacked
+        double[][] x = new double[b.length][];
+        int[] active = new int[b.length];
+        for (int c = 0; c < b.length; c++) {
+            active[c] = c;
+        }
+        List<Group> groups = pack(active, b, x);
+
+        int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int iteration = 0;
+        while (!groups.isEmpty() && iteration < maxIteration) {
+            long t0 = System.nanoTime();
+            for (Group group : groups) {
+                Arrays.fill(group.change, 0);
+                Arrays.fill(group.residual, 0);
+            }
+            // all groups go through a block together so the rows of A are still in cache for later groups
+            List<Group> current = groups;
+            if (blocks > 1) {
+                IntStream.range(0, blocks).parallel().forEach(block -> {
+                    for (Group group : current) {
+                        sweep(block, group);
+                    }
+                });
+            } else {
+                for (Group group : groups) {
+                    sweep(0, group);
+                }
+            }
+            iteration++;
+
+            double dMax = 0;
+            double r2 = 0;
+            int remaining = 0;
+            for (Group group : groups) {
+                double[] tmp = group.x;
+                group.x = group.next;
+                group.next = tmp;
+
+                int m = group.m;
+                for (int a = 0; a < m; a++) {
+                    double d = 0;
+                    for (int block = 0; block < blocks; block++) {
+                        d = Math.max(d, group.change[block * m + a]);
+                        r2 += group.residual[block * m + a];
+                    }
+                    dMax = Math.max(dMax, d);
+                    if (d <= tolerance || iteration >= maxIteration) {
+                        x[group.columns[a]] = group.column(a);
+                    } else {
+                        active[remaining++] = group.columns[a];
+                    }
+                }
+            }
+            if (monitor != null) {
+                monitor.iteration(iteration, dMax, Math.sqrt(r2), System.nanoTime() - t0);
+            }
+
+            if (remaining < active.length) {
+                // some solutions are done so the rest are squeezed into as few groups as possible
+                active = Arrays.copyOf(active, remaining);
+                for (Group group : groups) {
+                    for (int a = 0; a < group.m; a++) {
+                        if (x[group.columns[a]] == null) {
+                            x[group.columns[a]] = group.column(a);
+                        }
+                    }
+                }
+                groups = pack(active, b, x);
+                for (int c : active) {
+                    x[c] = null;
+                }
+            }
+        }
+        // only happens if maxIteration is zero or less
+        for (int c = 0; c < b.length; c++) {
+            if (x[c] == null) {
+                x[c] = new double[n];
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Interleaves solutions into groups of eight plus at most one smaller group.
+     *
+     * @param active Which solutions to put in groups
+     * @param b      All of the right hand sides
+     * @param x      The current solutions, null means all zero
+     */
+    private List<Group> pack(int[] active, double[][] b, double[][] x) {
+        List<Group> r = new ArrayList<>();
+        for (int start = 0; start < active.length; start += GROUP_SIZE) {
+            r.add(new Group(Arrays.copyOfRange(active, start, Math.min(active.length, start + GROUP_SIZE)), b, x));
+        }
+        return r;
+    }
+
+    private void sweep(int block, Group group) {
+        if (group.m == GROUP_SIZE) {
+            sweep8(block, group);
+        } else {
+            sweepAny(block, group);
+        }
+    }
+
+    /**
+     * Does a sweep for one block of rows for a full group of eight interleaved solutions. Keeping the
+     * eight sums in locals lets the compiler keep them in registers and vectorize the update for each
+     * non-zero.
+     */
+    private void sweep8(int block, Group group) {
+        double[] b = group.rhs;
+        double[] x = group.x;
+        int start = block * BLOCK_SIZE;
+        int end = Math.min(n, start + BLOCK_SIZE);
+        double[] sum = group.sum;
+        int out = block * GROUP_SIZE;
+        for (int i = start; i < end; i++) {
+            int row = i * GROUP_SIZE;
+            double s0 = b[row];
+            double s1 = b[row + 1];
+            double s2 = b[row + 2];
+            double s3 = b[row + 3];
+            double s4 = b[row + 4];
+            double s5 = b[row + 5];
+            double s6 = b[row + 6];
+            double s7 = b[row + 7];
+            for (int k = offDiagonal.rowStart(i); k < offDiagonal.rowEnd(i); k++) {
+                double v = offDiagonal.value(k);
+                int j = offDiagonal.column(k) * GROUP_SIZE;
+                s0 -= v * x[j];
+                s1 -= v * x[j + 1];
+                s2 -= v * x[j + 2];
+                s3 -= v * x[j + 3];
+                s4 -= v * x[j + 4];
+                s5 -= v * x[j + 5];
+                s6 -= v * x[j + 6];
+                s7 -= v * x[j + 7];
+            }
+            sum[out] = s0;
+            sum[out + 1] = s1;
+            sum[out + 2] = s2;
+            sum[out + 3] = s3;
+            sum[out + 4] = s4;
+            sum[out + 5] = s5;
+            sum[out + 6] = s6;
+            sum[out + 7] = s7;
+            update(i, block, group);
+        }
+    }
+
+    /**
+     * Does a sweep for one block of rows for any number of interleaved solutions. The non-zeros of a row
+     * are walked once per solution, but after the first time, both the row and the parts of x that it
+     * touches are in cache.
+     */
+    private void sweepAny(int block, Group group) {
+        int m = group.m;
+        double[] b = group.rhs;
+        double[] x = group.x;
+        int start = block * BLOCK_SIZE;
+        int end = Math.min(n, start + BLOCK_SIZE);
+        double[] sum = group.sum;
+        int out = block * m;
+        for (int i = start; i < end; i++) {
+            int row = i * m;
+            int rowStart = offDiagonal.rowStart(i);
+            int rowEnd = offDiagonal.rowEnd(i);
+            for (int a = 0; a < m; a++) {
+                double s = b[row + a];
+                for (int k = rowStart; k < rowEnd; k++) {
+                    s -= offDiagonal.value(k) * x[offDiagonal.column(k) * m + a];
+                }
+                sum[out + a] = s;
+            }
+            update(i, block, group);
+        }
+    }
+
+    /**
+     * Finishes row i of all the solutions in a group given b - R x for each of them in the block's part
+     * of group.sum.
+     */
+    private void update(int i, int block, Group group) {
+        int m = group.m;
+        int row = i * m;
+        int out = block * m;
+        double[] x = group.x;
+        double[] sum = group.sum;
+        double d = diagonal[i];
+        for (int a = 0; a < m; a++) {
+            double v = sum[out + a] / d;
+            double dx = v - x[row + a];
+            group.change[out + a] = Math.max(Math.abs(dx), group.change[out + a]);
+            double r = d * dx;
+            group.residual[out + a] += r * r;
+            group.next[row + a] = v;
+        }
+    }
+
+    /**
+     * Solutions that are updated together. Element i of the a-th solution is at x[i * m + a] and
+     * that solution is for the right hand side b[columns[a]].
+     */
+    private class Group {
+        final int m;
+        final int[] columns;
+        final double[] rhs;
+        double[] x;
+        double[] next;
+        // per block and solution, filled in by each sweep
+        final double[] change;
+        final double[] residual;
+        // per block and solution, b - R x for the row being updated
+        final double[] sum;
+
+        Group(int[] columns, double[][] b, double[][] x0) {
+            this.m = columns.length;
+            this.columns = columns;
+            rhs = new double[n * m];
+            x = new double[n * m];
+            next = new double[n * m];
+            int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            change = new double[blocks * m];
+            residual = new double[blocks * m];
+            sum = new double[blocks * m];
+            for (int a = 0; a < m; a++) {
+                double[] column = b[columns[a]];
+                double[] start = x0[columns[a]];
+                for (int i = 0; i < n; i++) {
+                    rhs[i * m + a] = column[i];
+                    if (start != null) {
+                        x[i * m + a] = start[i];
+                    }
+                }
+            }
+        }
+
+        double[] column(int a) {
+            double[] r = new double[n];
+            for (int i = 0; i < n; i++) {
+                r[i] = x[i * m + a];
+            }
+            return r;
+        }
+    }
+
+    /**
+     * Computes the new x for one block of rows, x' = D^-1 (b - R x), where R is A except for the diagonal.
+     * Since b - A x = D (x' - x), we get the residual for nearly free along the way.
+     */
+    private void sweep(int block, double[] b, double[] x, double[] next, double[] change, double[] residual) {
+        int start = block * BLOCK_SIZE;
+        int end = Math.min(n, start + BLOCK_SIZE);
+        double dMax = 0;
+        double r2 = 0;
+        for (int i = start; i < end; i++) {
+            double sum = b[i];
+            for (int k = offDiagonal.rowStart(i); k < offDiagonal.rowEnd(i); k++) {
+                sum -= offDiagonal.value(k) * x[offDiagonal.column(k)];
+            }
+            double v = sum / diagonal[i];
+            double dx = v - x[i];
+            dMax = Math.max(Math.abs(dx), dMax);
+            double r = diagonal[i] * dx;
+            r2 += r * r;
+            next[i] = v;
+        }
+        change[block] = dMax;
+        residual[block] = r2;
+    }
 }
@@ -0,0 +1,63 @@
+package com.tdunning.examples;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A view of part of a ByteBuffer as characters. In ISO-8859-1, every byte is exactly one
+ * character with the same code so this can be done without decoding or copying anything.
+ * <p>
+ * Views are only as stable as the buffer under them. Use {@link #toString()} to get a copy
+ * that can be kept.
+ */
+public class Latin1CharSequence implements CharSequence {
+    private ByteBuffer buf;
+    private int offset;
+    private int length;
+
+    public Latin1CharSequence(ByteBuffer buf, int offset, int length) {
+        set(buf, offset, length);
+    }
+
+    /**
+     * Points this view at a different range so that one view can be reused for many documents.
+     */
+    void set(ByteBuffer buf, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buf.limit()) {
+            throw new IndexOutOfBoundsException(String.format("Invalid range [%d,%d) for buffer of size %d", offset, offset + length, buf.limit()));
+        }
+        this.buf = buf;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(String.format("Invalid index %d (should be in [0,%d))", index, length));
+        }
+        return (char) (buf.get(offset + index) & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(String.format("Invalid range [%d,%d) for sequence of length %d", start, end, length));
+        }
+        return new Latin1CharSequence(buf, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buf.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
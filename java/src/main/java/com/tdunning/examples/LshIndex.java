@@ -0,0 +1,176 @@
+package com.tdunning.examples;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Approximate nearest neighbor search using random projections (also called SimHash). Each of
+ * several tables hashes every row to a few bits, one per random hyperplane, according to which
+ * side of the hyperplane the row lies on. Two vectors at an angle of theta get the same bit from a
+ * hyperplane with probability 1 - theta / pi, so rows that are close to a query in angle tend to
+ * land in the query's bucket in at least one of the tables.
+ * <p>
+ * A search looks in the query's bucket in each table and also in the buckets that differ in a
+ * single bit (multi-probe), which finds most near neighbors with far fewer tables. The rows found
+ * this way are then scored exactly against the query by the underlying {@link NearestNeighbors}.
+ * With b bits, each bucket holds about 1/2^b of the rows, so a search scores a small fraction of
+ * the matrix instead of all of it.
+ * <p>
+ * Since the hash only depends on angles, this approximates search by cosine similarity. It works
+ * best when the rows have similar lengths, ideally unit length.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public class LshIndex {
+    private static final ThreadLocal<int[][]> scratch = ThreadLocal.withInitial(() -> new int[1][1024]);
+
+    private final NearestNeighbors exact;
+    private final int tables;
+    private final int bits;
+    private final int dimension;
+    private final float[] planes;
+    // for each table, the rows in order of their code and where each code starts
+    private final int[][] members;
+    private final int[][] start;
+
+    /**
+     * @param exact  The rows to index. Candidates are scored with this.
+     * @param tables How many hash tables to use. More tables find more neighbors but cost more time.
+     * @param bits   How many bits to hash each row to in each table. More bits make smaller buckets.
+     * @param seed   Seed for the random hyperplanes
+     */
+    public LshIndex(NearestNeighbors exact, int tables, int bits, long seed) {
+        if (tables <= 0) {
+            throw new IllegalArgumentException(String.format("Must have at least one table, got %d", tables));
+        }
+        if (bits <= 0 || bits > 20) {
+            throw new IllegalArgumentException(String.format("Number of bits must be in [1,20], got %d", bits));
+        }
+        this.exact = exact;
+        this.tables = tables;
+        this.bits = bits;
+        this.dimension = exact.dimension();
+
+        Random rand = new Random(seed);
+        planes = new float[tables * bits * dimension];
+        for (int i = 0; i < planes.length; i++) {
+            planes[i] = (float) rand.nextGaussian();
+        }
+
+        int rows = exact.size();
+        float[] vectors = exact.vectors();
+        members = new int[tables][];
+        start = new int[tables][];
+        IntStream.range(0, tables).parallel().forEach(table -> {
+            // counting sort of the rows by their code
+            int[] codes = new int[rows];
+            int[] offsets = new int[(1 << bits) + 1];
+            for (int row = 0; row < rows; row++) {
+                codes[row] = code(table, vectors, row * dimension);
+                offsets[codes[row] + 1]++;
+            }
+            for (int c = 0; c < 1 << bits; c++) {
+                offsets[c + 1] += offsets[c];
+            }
+            int[] fill = Arrays.copyOf(offsets, 1 << bits);
+            int[] m = new int[rows];
+            for (int row = 0; row < rows; row++) {
+                m[fill[codes[row]]++] = row;
+            }
+            members[table] = m;
+            start[table] = offsets;
+        });
+    }
+
+    /**
+     * Finds rows with large dot products with a query. These are exact scores for the rows returned,
+     * but some rows that score better may be missed.
+     *
+     * @param query The query vector
+     * @param k     How many rows to return
+     * @return The best rows found, sorted by decreasing score
+     */
+    public TopK search(float[] query, int k) {
+        exact.checkQuery(query);
+        TopK r = new TopK(k);
+        int[][] buffer = scratch.get();
+        int n = candidates(query, buffer);
+        int[] candidates = buffer[0];
+        for (int i = 0; i < n; i++) {
+            r.offer(candidates[i], exact.score(candidates[i], query));
+        }
+        r.sort();
+        return r;
+    }
+
+    /**
+     * Searches for each of a batch of queries in parallel.
+     *
+     * @param queries The query vectors
+     * @param k       How many rows to return for each query
+     * @return For each query, the best rows found, sorted by decreasing score
+     */
+    public TopK[] search(float[][] queries, int k) {
+        TopK[] r = new TopK[queries.length];
+        IntStream.range(0, queries.length).parallel().forEach(q -> r[q] = search(queries[q], k));
+        return r;
+    }
+
+    /**
+     * @return How many distinct rows would be scored to answer a query
+     */
+    int candidates(float[] query) {
+        return candidates(query, scratch.get());
+    }
+
+    /**
+     * Collects the distinct rows in the buckets probed for a query into buffer[0], growing it as needed.
+     *
+     * @return The number of rows found
+     */
+    private int candidates(float[] query, int[][] buffer) {
+        int n = 0;
+        for (int table = 0; table < tables; table++) {
+            int code = code(table, query, 0);
+            int[] m = members[table];
+            int[] s = start[table];
+            // the query's own bucket and each bucket one bit away from it
+            for (int flip = -1; flip < bits; flip++) {
+                int c = flip < 0 ? code : code ^ (1 << flip);
+                int size = s[c + 1] - s[c];
+                if (buffer[0].length < n + size) {
+                    buffer[0] = Arrays.copyOf(buffer[0], Math.max(n + size, 2 * buffer[0].length));
+                }
+                System.arraycopy(m, s[c], buffer[0], n, size);
+                n += size;
+            }
+        }
+
+        // the same row is often found in more than one table
+        int[] candidates = buffer[0];
+        Arrays.sort(candidates, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || candidates[i] != candidates[distinct - 1]) {
+                candidates[distinct++] = candidates[i];
+            }
+        }
+        return distinct;
+    }
+
+    private int code(int table, float[] x, int offset) {
+        int code = 0;
+        for (int b = 0; b < bits; b++) {
+            int p = (table * bits + b) * dimension;
+            float sum = 0;
+            for (int i = 0; i < dimension; i++) {
+                sum += planes[p + i] * x[offset + i];
+            }
+            if (sum > 0) {
+                code |= 1 << b;
+            }
+        }
+        return code;
+    }
+}
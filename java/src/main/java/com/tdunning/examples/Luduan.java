@@ -0,0 +1,164 @@
+package com.tdunning.examples;
+
+import smile.math.matrix.SparseMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Turns documents into Luduan features. Each term j in the dictionary has a set of indicator
+ * terms, the terms that co-occur with j anomalously often according to an LLR test, and feature
+ * j of a document is how many of j's indicators the document contains. A document can have a
+ * strong Luduan feature for a term that it doesn't contain at all, which is the point. See the
+ * section on Luduan features in categorical.md.
+ * <p>
+ * The indicators are found once from a corpus by {@link LuduanTrainer}. To extract features
+ * quickly, they are kept as an inverted index from each term to the features that it is an
+ * indicator for. Extracting features from a document is then a dictionary lookup per token, a
+ * sort to find the distinct terms and one pass over the inverted list of each distinct term,
+ * counting into a dense per-thread array so that only the distinct features have to be sorted.
+ * Nothing is allocated once the result vector and the per-thread buffers have grown to size.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public class Luduan {
+    private static final ThreadLocal<Tokenizer> tokenizers = ThreadLocal.withInitial(Tokenizer::new);
+    private static final ThreadLocal<int[][]> scratch = ThreadLocal.withInitial(() -> new int[1][64]);
+    private static final ThreadLocal<int[][]> touched = ThreadLocal.withInitial(() -> new int[1][64]);
+
+    private final TermDictionary dictionary;
+    // features[start[i]] to features[start[i + 1]] are the features that term i is an indicator for
+    private final int[] start;
+    private final int[] features;
+    private final ThreadLocal<int[]> accumulators;
+
+    /**
+     * @param dictionary The terms, which must not change after this
+     * @param indicators A square matrix with the indicators of term j as the non-zeros in column j, as
+     *                   returned by {@link Associates#indicators(SparseMatrix, double[], double)}
+     */
+    public Luduan(TermDictionary dictionary, SparseMatrix indicators) {
+        int n = dictionary.size();
+        if (indicators.nrows() != n || indicators.ncols() != n) {
+            throw new IllegalArgumentException(String.format("Indicators should be %d x %d, got %d x %d",
+                    n, n, indicators.nrows(), indicators.ncols()));
+        }
+        this.dictionary = dictionary;
+        accumulators = ThreadLocal.withInitial(() -> new int[n]);
+
+        // transpose the indicators so that each term lists the features it contributes to
+        start = new int[n + 1];
+        indicators.foreachNonzero((i, j, x) -> start[i + 1]++);
+        for (int i = 0; i < n; i++) {
+            start[i + 1] += start[i];
+        }
+        features = new int[start[n]];
+        int[] fill = Arrays.copyOf(start, n);
+        // columns come in order so each inverted list ends up sorted
+        indicators.foreachNonzero((i, j, x) -> features[fill[i]++] = j);
+    }
+
+    public TermDictionary dictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return The number of features, which is the size of the dictionary
+     */
+    public int size() {
+        return dictionary.size();
+    }
+
+    /**
+     * @param term A term id
+     * @return The ids of the features that the term is an indicator for, in increasing order
+     */
+    public int[] indicatorFor(int term) {
+        return Arrays.copyOfRange(features, start[term], start[term + 1]);
+    }
+
+    /**
+     * Extracts the Luduan features of a document. Repeated terms only count once.
+     *
+     * @param doc    The document
+     * @param result Where to put the result. Any previous contents are overwritten.
+     * @return The result vector with the number of the document's distinct terms that indicate each feature
+     */
+    public SparseVector features(CharSequence doc, SparseVector result) {
+        Tokenizer tokenizer = tokenizers.get();
+        int n = tokenizer.tokenize(doc);
+        int[][] buffer = scratch.get();
+        if (buffer[0].length < n) {
+            buffer[0] = new int[Math.max(n, 2 * buffer[0].length)];
+        }
+        int[] terms = buffer[0];
+        int m = 0;
+        for (int k = 0; k < n; k++) {
+            int id = dictionary.get(doc, tokenizer.start(k), tokenizer.end(k));
+            if (id >= 0) {
+                terms[m++] = id;
+            }
+        }
+        return features(terms, m, result);
+    }
+
+    /**
+     * Extracts the Luduan features of a document that has already been converted to term ids.
+     *
+     * @param terms  The term ids of the document. The first n are rearranged.
+     * @param n      How many of the ids to use
+     * @param result Where to put the result. Any previous contents are overwritten.
+     * @return The result vector
+     */
+    public SparseVector features(int[] terms, int n, SparseVector result) {
+        Arrays.sort(terms, 0, n);
+        int total = 0;
+        int distinct = 0;
+        for (int k = 0; k < n; k++) {
+            if (k == 0 || terms[k] != terms[k - 1]) {
+                terms[distinct++] = terms[k];
+                total += start[terms[k] + 1] - start[terms[k]];
+            }
+        }
+
+        // counting in a dense array means that only the distinct features have to be sorted
+        int[] counts = accumulators.get();
+        int[][] buffer = touched.get();
+        int most = Math.min(total, counts.length);
+        if (buffer[0].length < most) {
+            buffer[0] = new int[Math.max(most, 2 * buffer[0].length)];
+        }
+        int[] hit = buffer[0];
+        int m = 0;
+        for (int k = 0; k < distinct; k++) {
+            int t = terms[k];
+            for (int i = start[t]; i < start[t + 1]; i++) {
+                int j = features[i];
+                if (counts[j]++ == 0) {
+                    hit[m++] = j;
+                }
+            }
+        }
+        result.reserve(m);
+        if (m > counts.length / 16) {
+            // with this many features, a scan of the counts in order is cheaper than sorting
+            int k = 0;
+            for (int j = 0; j < counts.length; j++) {
+                if (counts[j] != 0) {
+                    result.index[k] = j;
+                    result.values[k++] = counts[j];
+                    counts[j] = 0;
+                }
+            }
+        } else {
+            Arrays.sort(hit, 0, m);
+            for (int k = 0; k < m; k++) {
+                int j = hit[k];
+                result.index[k] = j;
+                result.values[k] = counts[j];
+                counts[j] = 0;
+            }
+        }
+        result.size = m;
+        return result;
+    }
+}
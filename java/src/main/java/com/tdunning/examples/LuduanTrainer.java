@@ -0,0 +1,125 @@
+package com.tdunning.examples;
+
+import smile.math.matrix.SparseMatrix;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Finds the indicators for a {@link Luduan} feature extractor from a corpus of documents.
+ * <p>
+ * This makes two passes over the corpus. The first counts how often each term occurs and keeps the
+ * terms that occur often enough to be worth having. The second counts how many documents contain
+ * each pair of terms using a {@link CooccurrenceBuilder}. Common terms are downsampled in the second
+ * pass by keeping each occurrence with probability frequencyCut / count so that no term occurs much
+ * more than frequencyCut times. That bounds the cost of the pair counts, which would otherwise be
+ * dominated by the most common terms, and loses very little since those terms are rarely useful
+ * indicators. Finally, the co-occurrences are scored by {@link Associates} and the best ones are
+ * kept as indicators.
+ * <p>
+ * The first pass is sequential. The second is done in parallel. Downsampling is random so the
+ * indicators can vary a little from one run to the next.
+ */
+public class LuduanTrainer {
+    private static final ThreadLocal<Tokenizer> tokenizers = ThreadLocal.withInitial(Tokenizer::new);
+    private static final ThreadLocal<int[][]> scratch = ThreadLocal.withInitial(() -> new int[1][64]);
+
+    private final int minCount;
+    private final double frequencyCut;
+    private final double minScore;
+    private final int maxAssociates;
+
+    /**
+     * @param minCount      Terms that occur fewer times than this are ignored
+     * @param frequencyCut  Terms that occur more than this many times are downsampled to about this many
+     * @param minScore      Co-occurrences must have an LLR score above this to be used as indicators
+     * @param maxAssociates The most indicators to keep for any term
+     */
+    public LuduanTrainer(int minCount, double frequencyCut, double minScore, int maxAssociates) {
+        if (minCount <= 0) {
+            throw new IllegalArgumentException(String.format("Minimum count must be positive, got %d", minCount));
+        }
+        if (frequencyCut <= 0) {
+            throw new IllegalArgumentException(String.format("Frequency cut must be positive, got %.1f", frequencyCut));
+        }
+        if (maxAssociates <= 0) {
+            throw new IllegalArgumentException(String.format("Must keep at least one associate, got %d", maxAssociates));
+        }
+        this.minCount = minCount;
+        this.frequencyCut = frequencyCut;
+        this.minScore = minScore;
+        this.maxAssociates = maxAssociates;
+    }
+
+    /**
+     * Finds indicators for all the terms that occur often enough in a corpus.
+     *
+     * @param corpus Supplies the documents. It is called once for each pass and must give the same
+     *               documents each time.
+     * @return A feature extractor
+     */
+    public Luduan train(Supplier<? extends Stream<? extends CharSequence>> corpus) {
+        // count all of the terms and bound the number of pairs that the second pass can produce
+        TermDictionary all = new TermDictionary(100000);
+        int[][] counting = {new int[1024]};
+        long[] pairs = {0};
+        Tokenizer tokenizer = tokenizers.get();
+        corpus.get().sequential().forEach(doc -> {
+            int n = tokenizer.tokenize(doc);
+            pairs[0] += (long) n * (n - 1) / 2;
+            for (int k = 0; k < n; k++) {
+                int id = all.add(doc, tokenizer.start(k), tokenizer.end(k));
+                if (id >= counting[0].length) {
+                    counting[0] = Arrays.copyOf(counting[0], 2 * counting[0].length);
+                }
+                counting[0][id]++;
+            }
+        });
+        int[] allCounts = counting[0];
+
+        // keep the terms that are common enough
+        TermDictionary dictionary = new TermDictionary();
+        int[] remap = new int[all.size()];
+        for (int id = 0; id < all.size(); id++) {
+            remap[id] = allCounts[id] >= minCount ? dictionary.add(all.term(id)) : -1;
+        }
+        int terms = dictionary.size();
+        if (terms == 0) {
+            throw new IllegalArgumentException(String.format("No term occurs at least %d times in the corpus", minCount));
+        }
+        dictionary.freeze();
+        double[] keep = new double[terms];
+        for (int id = 0; id < all.size(); id++) {
+            if (remap[id] >= 0) {
+                keep[remap[id]] = frequencyCut / allCounts[id];
+            }
+        }
+
+        // count co-occurrences of the downsampled terms, starting small since the bound is usually far too high
+        CooccurrenceBuilder builder = new CooccurrenceBuilder(terms, pairs[0]);
+        corpus.get().parallel().forEach(doc -> {
+            Tokenizer t = tokenizers.get();
+            int n = t.tokenize(doc);
+            int[][] buffer = scratch.get();
+            if (buffer[0].length < n) {
+                buffer[0] = new int[Math.max(n, 2 * buffer[0].length)];
+            }
+            int[] ids = buffer[0];
+            ThreadLocalRandom rand = ThreadLocalRandom.current();
+            int m = 0;
+            for (int k = 0; k < n; k++) {
+                int id = dictionary.get(doc, t.start(k), t.end(k));
+                if (id >= 0 && (keep[id] >= 1 || rand.nextDouble() < keep[id])) {
+                    ids[m++] = id;
+                }
+            }
+            builder.add(ids, m);
+        });
+
+        SparseMatrix cooc = builder.asSparseMatrix();
+        SparseMatrix indicators = new Associates(minScore, maxAssociates).indicators(cooc, builder.counts(), builder.documents());
+        return new Luduan(dictionary, indicators);
+    }
+}
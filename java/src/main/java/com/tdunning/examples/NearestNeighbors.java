@@ -0,0 +1,205 @@
+package com.tdunning.examples;
+
+import java.util.stream.IntStream;
+
+/**
+ * Finds the rows of a dense matrix that have the largest dot product with a query vector. This is
+ * the brute force search that is needed to find the terms nearest to a document vector in a table
+ * of word vectors, done without allocating anything per row.
+ * <p>
+ * The matrix is a single float array in row-major order so that the scan reads memory strictly
+ * sequentially. The rows are split into blocks that are scanned in parallel, each keeping its own
+ * {@link TopK}, and the blocks' results are merged at the end. Batches of queries are scored as a
+ * matrix-matrix product: each row is compared to a group of queries while it is still in cache,
+ * so the matrix is streamed from memory once per group of queries instead of once per query.
+ * <p>
+ * For cosine similarity, normalize the rows and the queries to unit length. See {@link LshIndex}
+ * for approximate search that only looks at a fraction of the rows.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public class NearestNeighbors {
+    private static final int BLOCK_SIZE = 1024;
+    private static final int QUERY_BLOCK = 32;
+
+    private final float[] vectors;
+    private final int rows;
+    private final int dimension;
+
+    /**
+     * @param vectors   The matrix in row-major order. This is not copied.
+     * @param rows      The number of rows
+     * @param dimension The number of columns
+     */
+    public NearestNeighbors(float[] vectors, int rows, int dimension) {
+        if (rows < 0 || dimension <= 0 || (long) rows * dimension > vectors.length) {
+            throw new IllegalArgumentException(String.format("Can't have %d rows of dimension %d in %d values", rows, dimension, vectors.length));
+        }
+        this.vectors = vectors;
+        this.rows = rows;
+        this.dimension = dimension;
+    }
+
+    /**
+     * Copies a table of word vectors onto the heap so that it can be searched. Row numbers are the
+     * same as in the table.
+     */
+    public static NearestNeighbors from(WordVectors table) {
+        int n = table.size();
+        int dimension = table.dimension();
+        if ((long) n * dimension > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Too many vectors to copy (%d x %d)", n, dimension));
+        }
+        float[] vectors = new float[n * dimension];
+        for (int row = 0; row < n; row++) {
+            table.view(row).get(vectors, row * dimension, dimension);
+        }
+        return new NearestNeighbors(vectors, n, dimension);
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Finds the rows with the largest dot product with a query.
+     *
+     * @param query The query vector
+     * @param k     How many rows to return
+     * @return The best rows sorted by decreasing score
+     */
+    public TopK search(float[] query, int k) {
+        return search(new float[][]{query}, k)[0];
+    }
+
+    /**
+     * Finds the nearest rows for each of a batch of queries.
+     *
+     * @param queries The query vectors
+     * @param k       How many rows to return for each query
+     * @return For each query, the best rows sorted by decreasing score
+     */
+    public TopK[] search(float[][] queries, int k) {
+        for (float[] query : queries) {
+            checkQuery(query);
+        }
+        int nq = queries.length;
+        TopK[] r = new TopK[nq];
+        for (int q = 0; q < nq; q++) {
+            r[q] = new TopK(k);
+        }
+        int blocks = (rows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        TopK[][] partial = new TopK[blocks][];
+        IntStream.range(0, blocks).parallel().forEach(block -> {
+            TopK[] top = new TopK[nq];
+            for (int q = 0; q < nq; q++) {
+                top[q] = new TopK(k);
+            }
+            int end = Math.min(rows, (block + 1) * BLOCK_SIZE);
+            for (int q0 = 0; q0 < nq; q0 += QUERY_BLOCK) {
+                int q1 = Math.min(nq, q0 + QUERY_BLOCK);
+                for (int row = block * BLOCK_SIZE; row < end; row++) {
+                    int offset = row * dimension;
+                    int q = q0;
+                    // four queries at a time so that each element of the row is loaded once for all four
+                    for (; q + 3 < q1; q += 4) {
+                        float[] a = queries[q];
+                        float[] b = queries[q + 1];
+                        float[] c = queries[q + 2];
+                        float[] d = queries[q + 3];
+                        // the same four partial sums per query as dot() so batched scores are identical
+                        float a0 = 0, a1 = 0, a2 = 0, a3 = 0;
+                        float b0 = 0, b1 = 0, b2 = 0, b3 = 0;
+                        float c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+                        float d0 = 0, d1 = 0, d2 = 0, d3 = 0;
+                        int i = 0;
+                        for (; i + 3 < dimension; i += 4) {
+                            float x0 = vectors[offset + i];
+                            float x1 = vectors[offset + i + 1];
+                            float x2 = vectors[offset + i + 2];
+                            float x3 = vectors[offset + i + 3];
+                            a0 += x0 * a[i];
+                            a1 += x1 * a[i + 1];
+                            a2 += x2 * a[i + 2];
+                            a3 += x3 * a[i + 3];
+                            b0 += x0 * b[i];
+                            b1 += x1 * b[i + 1];
+                            b2 += x2 * b[i + 2];
+                            b3 += x3 * b[i + 3];
+                            c0 += x0 * c[i];
+                            c1 += x1 * c[i + 1];
+                            c2 += x2 * c[i + 2];
+                            c3 += x3 * c[i + 3];
+                            d0 += x0 * d[i];
+                            d1 += x1 * d[i + 1];
+                            d2 += x2 * d[i + 2];
+                            d3 += x3 * d[i + 3];
+                        }
+                        for (; i < dimension; i++) {
+                            float x = vectors[offset + i];
+                            a0 += x * a[i];
+                            b0 += x * b[i];
+                            c0 += x * c[i];
+                            d0 += x * d[i];
+                        }
+                        top[q].offer(row, (a0 + a1) + (a2 + a3));
+                        top[q + 1].offer(row, (b0 + b1) + (b2 + b3));
+                        top[q + 2].offer(row, (c0 + c1) + (c2 + c3));
+                        top[q + 3].offer(row, (d0 + d1) + (d2 + d3));
+                    }
+                    for (; q < q1; q++) {
+                        top[q].offer(row, dot(vectors, offset, queries[q], dimension));
+                    }
+                }
+            }
+            partial[block] = top;
+        });
+
+        for (int q = 0; q < nq; q++) {
+            for (TopK[] top : partial) {
+                for (int i = 0; i < top[q].size(); i++) {
+                    r[q].offer(top[q].id(i), top[q].score(i));
+                }
+            }
+            r[q].sort();
+        }
+        return r;
+    }
+
+    /**
+     * @return The dot product of a query with one row
+     */
+    public double score(int row, float[] query) {
+        return dot(vectors, row * dimension, query, dimension);
+    }
+
+    void checkQuery(float[] query) {
+        if (query.length < dimension) {
+            throw new IllegalArgumentException(String.format("Query must have dimension %d, got %d", dimension, query.length));
+        }
+    }
+
+    float[] vectors() {
+        return vectors;
+    }
+
+    static double dot(float[] vectors, int offset, float[] q, int n) {
+        // independent sums let the multiplies overlap instead of waiting on a single running total
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            s0 += vectors[offset + i] * q[i];
+            s1 += vectors[offset + i + 1] * q[i + 1];
+            s2 += vectors[offset + i + 2] * q[i + 2];
+            s3 += vectors[offset + i + 3] * q[i + 3];
+        }
+        for (; i < n; i++) {
+            s0 += vectors[offset + i] * q[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+}
@@ -0,0 +1,80 @@
+package com.tdunning.examples;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records which locations of a matrix are non-zero without storing any values. Adding the same
+ * location more than once has the same effect as adding it once. This needs only 8 bytes per
+ * entry and is what you want for binary matrices such as document by term occurrence. Every
+ * non-zero has the value 1 when converted to a real matrix.
+ */
+public class PatternCooData extends AbstractCooData<PatternCooData> {
+    public PatternCooData() {
+        this(-1, -1, 105);
+    }
+
+    public PatternCooData(int rows, int cols) {
+        this(rows, cols, Math.max(rows, cols) + 5);
+    }
+
+    PatternCooData(int rows, int cols, int capacity) {
+        super(rows, cols, capacity);
+    }
+
+    /**
+     * Marks location i,j as non-zero.
+     *
+     * @param i The row
+     * @param j The column
+     */
+    public void add(int i, int j) {
+        nextEntry(i, j);
+    }
+
+    @Override
+    void resizeValues(int n) {
+    }
+
+    @Override
+    Object newValueScratch(int n) {
+        return null;
+    }
+
+    @Override
+    void scatterValues(int[] keys, int[] offsets, Object from, Object to) {
+    }
+
+    @Override
+    Object valueArray() {
+        return null;
+    }
+
+    @Override
+    void collapseValues(int[] starts, int n) {
+    }
+
+    @Override
+    void addValues(List<PatternCooData> parts, int[][] destinations) {
+    }
+
+    @Override
+    void copyValues(PatternCooData other, int to) {
+    }
+
+    @Override
+    void takeValues(PatternCooData other) {
+    }
+
+    @Override
+    PatternCooData create(int rows, int cols, int capacity) {
+        return new PatternCooData(rows, cols, capacity);
+    }
+
+    @Override
+    double[] doubleValues(boolean copy) {
+        double[] r = new double[entries];
+        Arrays.fill(r, 1);
+        return r;
+    }
+}
@@ -0,0 +1,196 @@
+package com.tdunning.examples;
+
+/**
+ * Encodes terms as random unit vectors where the randomness is seeded by the term itself, so the
+ * same term always gets the same vector and no table of vectors ever has to be built or loaded.
+ * In a few hundred dimensions, the vectors for any two different terms are nearly orthogonal,
+ * which makes this a fixed size encoding for categorical values of unbounded cardinality. See
+ * the section on random vector embedding in categorical.md.
+ * <p>
+ * Each term is hashed to 64 bits straight from the characters of the document (lower case, as
+ * with {@link TermDictionary}) and the hash seeds a SplitMix64 generator that produces Gaussian
+ * components, which are then scaled to unit length. Generating a vector takes a few hundred
+ * nanoseconds, so the vectors of recently used terms can optionally be kept in a direct-mapped
+ * cache where each hash has exactly one slot and a new vector simply replaces whatever was in its
+ * slot. Because word frequencies are so skewed, even a small cache catches most of the tokens in
+ * typical text, and a hit costs no more than an array read and a comparison.
+ * <p>
+ * Instances can be shared between threads. The cache needs no locks because its slots hold
+ * immutable entries, so a thread sees either a complete entry or the one it replaced.
+ */
+public class RandomEmbedding {
+    private static final ThreadLocal<Tokenizer> tokenizers = ThreadLocal.withInitial(Tokenizer::new);
+
+    private final int dimension;
+    private final long seed;
+    private final Entry[] cache;
+    private final int mask;
+    private final ThreadLocal<float[]> scratch;
+
+    /**
+     * An embedding without a cache.
+     *
+     * @param dimension The size of the vectors
+     * @param seed      Different seeds give unrelated embeddings
+     */
+    public RandomEmbedding(int dimension, long seed) {
+        this(dimension, seed, 0);
+    }
+
+    /**
+     * @param dimension The size of the vectors
+     * @param seed      Different seeds give unrelated embeddings
+     * @param cacheSize How many vectors to keep in the cache, or 0 for no cache. This is rounded up to a
+     *                  power of two.
+     */
+    public RandomEmbedding(int dimension, long seed, int cacheSize) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException(String.format("Dimension must be positive, got %d", dimension));
+        }
+        if (cacheSize < 0 || cacheSize > 1 << 30) {
+            throw new IllegalArgumentException(String.format("Cache size must be between 0 and 2^30, got %d", cacheSize));
+        }
+        this.dimension = dimension;
+        this.seed = seed;
+        if (cacheSize > 0) {
+            int slots = Integer.highestOneBit(cacheSize);
+            if (slots < cacheSize) {
+                slots *= 2;
+            }
+            cache = new Entry[slots];
+            mask = slots - 1;
+        } else {
+            cache = null;
+            mask = 0;
+        }
+        scratch = ThreadLocal.withInitial(() -> new float[dimension]);
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * @param term The term to encode
+     * @return A new copy of the unit vector for the term
+     */
+    public float[] vector(CharSequence term) {
+        return lookup(hash(term, 0, term.length())).clone();
+    }
+
+    /**
+     * Adds the vector for one term, times a weight, to a running sum. The term is given as a range of
+     * characters so that no String is needed.
+     *
+     * @param text   Text containing the term
+     * @param start  The offset of the first character of the term
+     * @param end    The offset just after the term
+     * @param weight How much of the term's vector to add, such as an IDF weight
+     * @param sum    The vector to add to
+     */
+    public void add(CharSequence text, int start, int end, float weight, float[] sum) {
+        float[] v = lookup(hash(text, start, end));
+        // a simple loop like this gets compiled to SIMD instructions
+        for (int i = 0; i < dimension; i++) {
+            sum[i] += weight * v[i];
+        }
+    }
+
+    /**
+     * Sums the vectors of all of the tokens in a document. Repeated terms count each time.
+     *
+     * @param doc    The document
+     * @param result Where to put the result. This must have length of at least the dimension and any
+     *               previous contents are overwritten.
+     * @return The result
+     */
+    public float[] embed(CharSequence doc, float[] result) {
+        for (int i = 0; i < dimension; i++) {
+            result[i] = 0;
+        }
+        Tokenizer tokenizer = tokenizers.get();
+        int n = tokenizer.tokenize(doc);
+        for (int k = 0; k < n; k++) {
+            add(doc, tokenizer.start(k), tokenizer.end(k), 1, result);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the vector for a hash. Without a cache, this is a thread-local buffer that will be overwritten
+     * by the next call.
+     */
+    private float[] lookup(long h) {
+        if (cache == null) {
+            float[] v = scratch.get();
+            generate(h, v);
+            return v;
+        }
+        // the low bits of an FNV hash are mixed well enough to pick a slot
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        Entry e = cache[slot];
+        if (e == null || e.key != h) {
+            // two threads might both make the same vector, which is harmless
+            float[] v = new float[dimension];
+            generate(h, v);
+            e = new Entry(h, v);
+            cache[slot] = e;
+        }
+        return e.vector;
+    }
+
+    private void generate(long h, float[] v) {
+        long state = h;
+        double sum = 0;
+        for (int i = 0; i < dimension; i += 2) {
+            // Box-Muller gives two independent Gaussian values per pair of uniform values
+            state += 0x9e3779b97f4a7c15L;
+            double u1 = ((mix64(state) >>> 11) + 1) * 0x1.0p-53;
+            state += 0x9e3779b97f4a7c15L;
+            double u2 = (mix64(state) >>> 11) * 0x1.0p-53;
+            double r = Math.sqrt(-2 * Math.log(u1));
+            double g1 = r * Math.cos(2 * Math.PI * u2);
+            v[i] = (float) g1;
+            sum += g1 * g1;
+            if (i + 1 < dimension) {
+                double g2 = r * Math.sin(2 * Math.PI * u2);
+                v[i + 1] = (float) g2;
+                sum += g2 * g2;
+            }
+        }
+        float scale = (float) (1 / Math.sqrt(sum));
+        for (int i = 0; i < dimension; i++) {
+            v[i] *= scale;
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the lower case term, starting from the seed.
+     */
+    private long hash(CharSequence text, int start, int end) {
+        long h = 0xcbf29ce484222325L ^ mix64(seed);
+        for (int i = start; i < end; i++) {
+            h ^= Tokenizer.lower(text.charAt(i));
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static final class Entry {
+        // final fields mean that a racing reader can't see an entry with its vector missing
+        final long key;
+        final float[] vector;
+
+        Entry(long key, float[] vector) {
+            this.key = key;
+            this.vector = vector;
+        }
+    }
+
+    // the SplitMix64 finalizer
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
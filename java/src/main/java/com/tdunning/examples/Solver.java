@@ -0,0 +1,29 @@
+package com.tdunning.examples;
+
+/**
+ * Common interface for the iterative solvers of sparse linear systems A x = b.
+ * <p>
+ * {@link Jacobi} is the simplest and parallelizes trivially, {@link GaussSeidel} (optionally with
+ * over-relaxation and multicolor ordering) converges in fewer sweeps and {@link ConjugateGradient}
+ * is usually fastest by far when A is symmetric and positive definite.
+ */
+public interface Solver {
+    default double[] solve(double[] b) {
+        return solve(b, 1e-10, 10000);
+    }
+
+    default double[] solve(double[] b, double tolerance, int maxIteration) {
+        return solve(b, tolerance, maxIteration, null);
+    }
+
+    /**
+     * Solves A x = b.
+     *
+     * @param b            The right hand side
+     * @param tolerance    Iteration stops when no element of x changes by more than this
+     * @param maxIteration Iteration stops after this many sweeps regardless of convergence
+     * @param monitor      Told about each sweep. Can be null.
+     * @return The solution x
+     */
+    double[] solve(double[] b, double tolerance, int maxIteration, SolverMonitor monitor);
+}
@@ -0,0 +1,18 @@
+package com.tdunning.examples;
+
+/**
+ * Receives a progress report from an iterative solver after every sweep. This replaces printing
+ * progress so that callers can log, collect convergence history or stop worrying about it.
+ */
+public interface SolverMonitor {
+    /**
+     * Called after each sweep.
+     *
+     * @param iteration How many sweeps have been completed, starting with 1
+     * @param change    The largest change to any element of x during this sweep
+     * @param residual  The 2-norm of b - Ax for the x that this sweep started from. Gauss-Seidel takes the
+     *                  residual of each row just before updating it, so it reports an estimate.
+     * @param nanos     How long the sweep took
+     */
+    void iteration(int iteration, double change, double residual, long nanos);
+}
@@ -19,13 +19,22 @@
 
 package com.tdunning.examples;
 
-import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
 /**
  * Static sorting methods
+ * <p>
+ * Each sort comes in a sequential and a parallel form. The parallel forms partition the data with
+ * fork-join tasks until the pieces are small enough to sort sequentially. Pivots for the index sort
+ * are random, but come from a thread-local generator so that concurrent sorts don't contend.
  */
 public class Sort {
-    private static final Random prng = new Random(); // for choosing pivots during quicksort
+    // below this size, the parallel sorts just do a sequential sort
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
     /**
      * Quick sort using an index array.  On return,
      * values[order[i]] is in order as i goes 0..values.length
@@ -81,66 +90,10 @@ public class Sort {
     private static void quickSort(int[] order, int[] values, int start, int end, int limit) {
         // the while loop implements tail-recursion to avoid excessive stack calls on nasty cases
         while (end - start > limit) {
-
             // pivot by a random element
-            int pivotIndex = start + prng.nextInt(end - start);
-            double pivotValue = values[order[pivotIndex]];
-
-            // move pivot to beginning of array
-            swap(order, start, pivotIndex);
-
-            // we use a three way partition because many duplicate values is an important case
-
-            int low = start + 1;   // low points to first value not known to be equal to pivotValue
-            int high = end;        // high points to first value > pivotValue
-            int i = low;           // i scans the array
-            while (i < high) {
-                // invariant:  values[order[k]] == pivotValue for k in [0..low)
-                // invariant:  values[order[k]] < pivotValue for k in [low..i)
-                // invariant:  values[order[k]] > pivotValue for k in [high..end)
-                // in-loop:  i < high
-                // in-loop:  low < high
-                // in-loop:  i >= low
-                double vi = values[order[i]];
-                if (vi == pivotValue) {
-                    if (low != i) {
-                        swap(order, low, i);
-                    } else {
-                        i++;
-                    }
-                    low++;
-                } else if (vi > pivotValue) {
-                    high--;
-                    swap(order, i, high);
-                } else {
-                    // vi < pivotValue
-                    i++;
-                }
-            }
-            // invariant:  values[order[k]] == pivotValue for k in [0..low)
-            // invariant:  values[order[k]] < pivotValue for k in [low..i)
-            // invariant:  values[order[k]] > pivotValue for k in [high..end)
-            // assert i == high || low == high therefore, we are done with partition
-
-            // at this point, i==high, from [start,low) are == pivot, [low,high) are < and [high,end) are >
-            // we have to move the values equal to the pivot into the middle.  To do this, we swap pivot
-            // values into the top end of the [low,high) range stopping when we run out of destinations
-            // or when we run out of values to copy
-            int from = start;
-            int to = high - 1;
-            for (i = 0; from < low && to >= low; i++) {
-                swap(order, from++, to--);
-            }
-            if (from == low) {
-                // ran out of things to copy.  This means that the the last destination is the boundary
-                low = to + 1;
-            } else {
-                // ran out of places to copy to.  This means that there are uncopied pivots and the
-                // boundary is at the beginning of those
-                low = from;
-            }
-
-//            checkPartition(order, values, pivotValue, start, low, high, end);
+            long bounds = partition(order, values, start, end, start + ThreadLocalRandom.current().nextInt(end - start));
+            int low = (int) (bounds >>> 32);
+            int high = (int) bounds;
 
             // now recurse, but arrange it so we handle the longer limit by tail recursion
             if (low - start < end - high) {
@@ -158,6 +111,131 @@ public class Sort {
         }
     }
 
+    /**
+     * Three way partition of part of an index array around the value at pivotIndex.
+     *
+     * @return The boundaries low and high packed into a long as (low &lt;&lt; 32) | high. Values from start
+     * to low are less than the pivot, from low to high are equal and from high to end are greater.
+     */
+    private static long partition(int[] order, int[] values, int start, int end, int pivotIndex) {
+        double pivotValue = values[order[pivotIndex]];
+
+        // move pivot to beginning of array
+        swap(order, start, pivotIndex);
+
+        // we use a three way partition because many duplicate values is an important case
+
+        int low = start + 1;   // low points to first value not known to be equal to pivotValue
+        int high = end;        // high points to first value > pivotValue
+        int i = low;           // i scans the array
+        while (i < high) {
+            // invariant:  values[order[k]] == pivotValue for k in [0..low)
+            // invariant:  values[order[k]] < pivotValue for k in [low..i)
+            // invariant:  values[order[k]] > pivotValue for k in [high..end)
+            // in-loop:  i < high
+            // in-loop:  low < high
+            // in-loop:  i >= low
+            double vi = values[order[i]];
+            if (vi == pivotValue) {
+                if (low != i) {
+                    swap(order, low, i);
+                } else {
+                    i++;
+                }
+                low++;
+            } else if (vi > pivotValue) {
+                high--;
+                swap(order, i, high);
+            } else {
+                // vi < pivotValue
+                i++;
+            }
+        }
+        // invariant:  values[order[k]] == pivotValue for k in [0..low)
+        // invariant:  values[order[k]] < pivotValue for k in [low..i)
+        // invariant:  values[order[k]] > pivotValue for k in [high..end)
+        // assert i == high || low == high therefore, we are done with partition
+
+        // at this point, i==high, from [start,low) are == pivot, [low,high) are < and [high,end) are >
+        // we have to move the values equal to the pivot into the middle.  To do this, we swap pivot
+        // values into the top end of the [low,high) range stopping when we run out of destinations
+        // or when we run out of values to copy
+        int from = start;
+        int to = high - 1;
+        for (i = 0; from < low && to >= low; i++) {
+            swap(order, from++, to--);
+        }
+        if (from == low) {
+            // ran out of things to copy.  This means that the the last destination is the boundary
+            low = to + 1;
+        } else {
+            // ran out of places to copy to.  This means that there are uncopied pivots and the
+            // boundary is at the beginning of those
+            low = from;
+        }
+
+//        checkPartition(order, values, pivotValue, start, low, high, end);
+        return ((long) low << 32) | high;
+    }
+
+    /**
+     * Parallel version of {@link #sort(int[], int[])}.
+     *
+     * @param order  Indexes into values
+     * @param values The values to sort.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static void parallelSort(int[] order, int[] values) {
+        parallelSort(order, values, 0, values.length);
+    }
+
+    /**
+     * Parallel version of {@link #sort(int[], int[], int, int)}. This runs in the common fork-join pool.
+     *
+     * @param order  Indexes into values
+     * @param values The values to sort.
+     * @param start  The first element to sort
+     * @param n      The number of values to sort
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static void parallelSort(int[] order, int[] values, int start, int n) {
+        if (n <= PARALLEL_THRESHOLD) {
+            sort(order, values, start, n);
+        } else {
+            IntStream.range(start, start + n).parallel().forEach(i -> order[i] = i);
+            ForkJoinPool.commonPool().invoke(new IndexSortTask(order, values, start, start + n));
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class IndexSortTask extends RecursiveAction {
+        private final int[] order;
+        private final int[] values;
+        private final int start;
+        private final int end;
+
+        IndexSortTask(int[] order, int[] values, int start, int end) {
+            this.order = order;
+            this.values = values;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_THRESHOLD) {
+                // nothing ever moves across a partition boundary so each piece can be finished by itself
+                quickSort(order, values, start, end, 64);
+                insertionSort(order, values, start, end, 64);
+            } else {
+                long bounds = partition(order, values, start, end, start + ThreadLocalRandom.current().nextInt(end - start));
+                int low = (int) (bounds >>> 32);
+                int high = (int) bounds;
+                invokeAll(new IndexSortTask(order, values, start, low), new IndexSortTask(order, values, high, end));
+            }
+        }
+    }
+
     /**
      * Quick sort in place of several paired arrays.  On return,
      * keys[...] is in order and the values[] arrays will be
@@ -197,127 +275,446 @@ public class Sort {
     private static void quickSort(double[] key, double[][] values, int start, int end, int limit) {
         // the while loop implements tail-recursion to avoid excessive stack calls on nasty cases
         while (end - start > limit) {
+            long bounds = partition(key, values, start, end, medianOfThree(key, start, end));
+            int low = (int) (bounds >>> 32);
+            int high = (int) bounds;
 
-            // median of three values for the pivot
-            int a = start;
-            int b = (start + end) / 2;
-            int c = end - 1;
-
-            int pivotIndex;
-            double pivotValue;
-            double va = key[a];
-            double vb = key[b];
-            double vc = key[c];
-            //noinspection Duplicates
-            if (va > vb) {
-                if (vc > va) {
-                    // vc > va > vb
-                    pivotIndex = a;
-                    pivotValue = va;
-                } else {
-                    // va > vb, va >= vc
-                    if (vc < vb) {
-                        // va > vb > vc
-                        pivotIndex = b;
-                        pivotValue = vb;
-                    } else {
-                        // va >= vc >= vb
-                        pivotIndex = c;
-                        pivotValue = vc;
-                    }
-                }
+            // now recurse, but arrange it so we handle the longer limit by tail recursion
+            if (low - start < end - high) {
+                quickSort(key, values, start, low, limit);
+
+                // this is really a way to do
+                //    quickSort(order, values, high, end, limit);
+                start = high;
+            } else {
+                quickSort(key, values, high, end, limit);
+                // this is really a way to do
+                //    quickSort(order, values, start, low, limit);
+                end = low;
+            }
+        }
+    }
+
+    /**
+     * Picks the median of the first, middle and last keys as the pivot.
+     *
+     * @return The index of the pivot
+     */
+    private static int medianOfThree(double[] key, int start, int end) {
+        // median of three values for the pivot
+        int a = start;
+        int b = (start + end) / 2;
+        int c = end - 1;
+
+        int pivotIndex;
+        double va = key[a];
+        double vb = key[b];
+        double vc = key[c];
+        //noinspection Duplicates
+        if (va > vb) {
+            if (vc > va) {
+                // vc > va > vb
+                pivotIndex = a;
             } else {
-                // vb >= va
-                if (vc > vb) {
-                    // vc > vb >= va
+                // va > vb, va >= vc
+                if (vc < vb) {
+                    // va > vb > vc
                     pivotIndex = b;
-                    pivotValue = vb;
                 } else {
-                    // vb >= va, vb >= vc
-                    if (vc < va) {
-                        // vb >= va > vc
-                        pivotIndex = a;
-                        pivotValue = va;
-                    } else {
-                        // vb >= vc >= va
-                        pivotIndex = c;
-                        pivotValue = vc;
-                    }
+                    // va >= vc >= vb
+                    pivotIndex = c;
                 }
             }
-
-            // move pivot to beginning of array
-            swap(start, pivotIndex, key, values);
-
-            // we use a three way partition because many duplicate values is an important case
-
-            int low = start + 1;   // low points to first value not known to be equal to pivotValue
-            int high = end;        // high points to first value > pivotValue
-            int i = low;           // i scans the array
-            while (i < high) {
-                // invariant:  values[order[k]] == pivotValue for k in [0..low)
-                // invariant:  values[order[k]] < pivotValue for k in [low..i)
-                // invariant:  values[order[k]] > pivotValue for k in [high..end)
-                // in-loop:  i < high
-                // in-loop:  low < high
-                // in-loop:  i >= low
-                double vi = key[i];
-                if (vi == pivotValue) {
-                    if (low != i) {
-                        swap(low, i, key, values);
-                    } else {
-                        i++;
-                    }
-                    low++;
-                } else if (vi > pivotValue) {
-                    high--;
-                    swap(i, high, key, values);
+        } else {
+            // vb >= va
+            if (vc > vb) {
+                // vc > vb >= va
+                pivotIndex = b;
+            } else {
+                // vb >= va, vb >= vc
+                if (vc < va) {
+                    // vb >= va > vc
+                    pivotIndex = a;
                 } else {
-                    // vi < pivotValue
-                    i++;
+                    // vb >= vc >= va
+                    pivotIndex = c;
                 }
             }
+        }
+        return pivotIndex;
+    }
+
+    /**
+     * Three way partition of part of paired arrays around the key at pivotIndex.
+     *
+     * @return The boundaries low and high packed into a long as (low &lt;&lt; 32) | high.
+     */
+    private static long partition(double[] key, double[][] values, int start, int end, int pivotIndex) {
+        double pivotValue = key[pivotIndex];
+
+        // move pivot to beginning of array
+        swap(start, pivotIndex, key, values);
+
+        // we use a three way partition because many duplicate values is an important case
+
+        int low = start + 1;   // low points to first value not known to be equal to pivotValue
+        int high = end;        // high points to first value > pivotValue
+        int i = low;           // i scans the array
+        while (i < high) {
             // invariant:  values[order[k]] == pivotValue for k in [0..low)
             // invariant:  values[order[k]] < pivotValue for k in [low..i)
             // invariant:  values[order[k]] > pivotValue for k in [high..end)
-            // assert i == high || low == high therefore, we are done with partition
-
-            // at this point, i==high, from [start,low) are == pivot, [low,high) are < and [high,end) are >
-            // we have to move the values equal to the pivot into the middle.  To do this, we swap pivot
-            // values into the top end of the [low,high) range stopping when we run out of destinations
-            // or when we run out of values to copy
-            int from = start;
-            int to = high - 1;
-            for (i = 0; from < low && to >= low; i++) {
-                swap(from++, to--, key, values);
+            // in-loop:  i < high
+            // in-loop:  low < high
+            // in-loop:  i >= low
+            double vi = key[i];
+            if (vi == pivotValue) {
+                if (low != i) {
+                    swap(low, i, key, values);
+                } else {
+                    i++;
+                }
+                low++;
+            } else if (vi > pivotValue) {
+                high--;
+                swap(i, high, key, values);
+            } else {
+                // vi < pivotValue
+                i++;
             }
-            if (from == low) {
-                // ran out of things to copy.  This means that the the last destination is the boundary
-                low = to + 1;
+        }
+        // invariant:  values[order[k]] == pivotValue for k in [0..low)
+        // invariant:  values[order[k]] < pivotValue for k in [low..i)
+        // invariant:  values[order[k]] > pivotValue for k in [high..end)
+        // assert i == high || low == high therefore, we are done with partition
+
+        // at this point, i==high, from [start,low) are == pivot, [low,high) are < and [high,end) are >
+        // we have to move the values equal to the pivot into the middle.  To do this, we swap pivot
+        // values into the top end of the [low,high) range stopping when we run out of destinations
+        // or when we run out of values to copy
+        int from = start;
+        int to = high - 1;
+        for (i = 0; from < low && to >= low; i++) {
+            swap(from++, to--, key, values);
+        }
+        if (from == low) {
+            // ran out of things to copy.  This means that the the last destination is the boundary
+            low = to + 1;
+        } else {
+            // ran out of places to copy to.  This means that there are uncopied pivots and the
+            // boundary is at the beginning of those
+            low = from;
+        }
+        return ((long) low << 32) | high;
+    }
+
+    /**
+     * Parallel version of {@link #sort(double[], double[]...)}.
+     *
+     * @param key    Values to sort on
+     * @param values The auxilliary values to sort.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static void parallelSort(double[] key, double[]... values) {
+        parallelSort(key, 0, key.length, values);
+    }
+
+    /**
+     * Parallel version of {@link #sort(double[], int, int, double[]...)}. This runs in the common fork-join pool.
+     *
+     * @param key    Values to sort on
+     * @param start  The first element to sort
+     * @param n      The number of values to sort
+     * @param values The auxilliary values to sort.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static void parallelSort(double[] key, int start, int n, double[]... values) {
+        if (n <= PARALLEL_THRESHOLD) {
+            sort(key, start, n, values);
+        } else {
+            ForkJoinPool.commonPool().invoke(new PairedSortTask(key, values, start, start + n));
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class PairedSortTask extends RecursiveAction {
+        private final double[] key;
+        private final double[][] values;
+        private final int start;
+        private final int end;
+
+        PairedSortTask(double[] key, double[][] values, int start, int end) {
+            this.key = key;
+            this.values = values;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_THRESHOLD) {
+                quickSort(key, values, start, end, 8);
+                insertionSort(key, values, start, end, 8);
             } else {
-                // ran out of places to copy to.  This means that there are uncopied pivots and the
-                // boundary is at the beginning of those
-                low = from;
+                long bounds = partition(key, values, start, end, medianOfThree(key, start, end));
+                int low = (int) (bounds >>> 32);
+                int high = (int) bounds;
+                invokeAll(new PairedSortTask(key, values, start, low), new PairedSortTask(key, values, high, end));
             }
+        }
+    }
+
+    /**
+     * Quick sort of an int key in place. On return, key[start..start+n) is in order and each of the
+     * values[] arrays has been reordered in the same way. The values can be any mix of int[], float[]
+     * and double[] arrays. Compared to an index sort, this needs no index array and no copying
+     * afterwards to put the values in order.
+     *
+     * @param key    Values to sort on
+     * @param start  The first element to sort
+     * @param n      The number of values to sort
+     * @param values The auxilliary int[], float[] or double[] arrays to sort.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static void sort(int[] key, int start, int n, Object... values) {
+        Payload payload = new Payload(values);
+        quickSort(key, payload, start, start + n, 8);
+        insertionSort(key, payload, start, start + n, 8);
+    }
+
+    /**
+     * Parallel version of {@link #sort(int[], int, int, Object...)}. This runs in the common fork-join pool.
+     *
+     * @param key    Values to sort on
+     * @param start  The first element to sort
+     * @param n      The number of values to sort
+     * @param values The auxilliary int[], float[] or double[] arrays to sort.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static void parallelSort(int[] key, int start, int n, Object... values) {
+        if (n <= PARALLEL_THRESHOLD) {
+            sort(key, start, n, values);
+        } else {
+            ForkJoinPool.commonPool().invoke(new IntKeySortTask(key, new Payload(values), start, start + n));
+        }
+    }
 
-//            checkPartition(order, values, pivotValue, start, low, high, end);
+    private static void quickSort(int[] key, Payload values, int start, int end, int limit) {
+        // the while loop implements tail-recursion to avoid excessive stack calls on nasty cases
+        while (end - start > limit) {
+            long bounds = partition(key, values, start, end, medianOfThree(key, start, end));
+            int low = (int) (bounds >>> 32);
+            int high = (int) bounds;
 
             // now recurse, but arrange it so we handle the longer limit by tail recursion
             if (low - start < end - high) {
                 quickSort(key, values, start, low, limit);
-
-                // this is really a way to do
-                //    quickSort(order, values, high, end, limit);
                 start = high;
             } else {
                 quickSort(key, values, high, end, limit);
-                // this is really a way to do
-                //    quickSort(order, values, start, low, limit);
                 end = low;
             }
         }
     }
 
+    private static int medianOfThree(int[] key, int start, int end) {
+        int a = start;
+        int b = (start + end) / 2;
+        int c = end - 1;
+
+        int va = key[a];
+        int vb = key[b];
+        int vc = key[c];
+        if (va > vb) {
+            if (vc > va) {
+                return a;
+            } else {
+                return vc < vb ? b : c;
+            }
+        } else {
+            if (vc > vb) {
+                return b;
+            } else {
+                return vc < va ? a : c;
+            }
+        }
+    }
+
+    /**
+     * Three way partition with an int key, the same as for a double key.
+     *
+     * @return The boundaries low and high packed into a long as (low &lt;&lt; 32) | high.
+     */
+    private static long partition(int[] key, Payload values, int start, int end, int pivotIndex) {
+        int pivotValue = key[pivotIndex];
+        swap(start, pivotIndex, key, values);
+
+        int low = start + 1;   // low points to first value not known to be equal to pivotValue
+        int high = end;        // high points to first value > pivotValue
+        int i = low;           // i scans the array
+        while (i < high) {
+            int vi = key[i];
+            if (vi == pivotValue) {
+                if (low != i) {
+                    swap(low, i, key, values);
+                } else {
+                    i++;
+                }
+                low++;
+            } else if (vi > pivotValue) {
+                high--;
+                swap(i, high, key, values);
+            } else {
+                i++;
+            }
+        }
+
+        // move the values equal to the pivot from the beginning into the middle
+        int from = start;
+        int to = high - 1;
+        while (from < low && to >= low) {
+            swap(from++, to--, key, values);
+        }
+        if (from == low) {
+            low = to + 1;
+        } else {
+            low = from;
+        }
+        return ((long) low << 32) | high;
+    }
+
+    private static void insertionSort(int[] key, Payload values, int start, int end, int limit) {
+        // loop invariant: all values start ... i-1 are ordered
+        for (int i = start + 1; i < end; i++) {
+            int v = key[i];
+            int m = Math.max(i - limit, start);
+            for (int j = i; j >= m; j--) {
+                if (j == m || key[j - 1] <= v) {
+                    if (j < i) {
+                        System.arraycopy(key, j, key, j + 1, i - j);
+                        key[j] = v;
+                        values.insert(i, j);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void swap(int i, int j, int[] key, Payload values) {
+        int t = key[i];
+        key[i] = key[j];
+        key[j] = t;
+        values.swap(i, j);
+    }
+
+    @SuppressWarnings("serial")
+    private static class IntKeySortTask extends RecursiveAction {
+        private final int[] key;
+        private final Payload values;
+        private final int start;
+        private final int end;
+
+        IntKeySortTask(int[] key, Payload values, int start, int end) {
+            this.key = key;
+            this.values = values;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_THRESHOLD) {
+                quickSort(key, values, start, end, 8);
+                insertionSort(key, values, start, end, 8);
+            } else {
+                long bounds = partition(key, values, start, end, medianOfThree(key, start, end));
+                int low = (int) (bounds >>> 32);
+                int high = (int) bounds;
+                invokeAll(new IntKeySortTask(key, values, start, low), new IntKeySortTask(key, values, high, end));
+            }
+        }
+    }
+
+    /**
+     * The arrays that move along with an int key, split up by type once so that each swap doesn't
+     * have to check types again.
+     */
+    private static final class Payload {
+        private final int[][] ints;
+        private final float[][] floats;
+        private final double[][] doubles;
+
+        Payload(Object[] values) {
+            int ni = 0;
+            int nf = 0;
+            int nd = 0;
+            for (Object v : values) {
+                if (v instanceof int[]) {
+                    ni++;
+                } else if (v instanceof float[]) {
+                    nf++;
+                } else if (v instanceof double[]) {
+                    nd++;
+                } else {
+                    throw new IllegalArgumentException(String.format("Can't sort values of type %s",
+                            v == null ? "null" : v.getClass().getSimpleName()));
+                }
+            }
+            ints = new int[ni][];
+            floats = new float[nf][];
+            doubles = new double[nd][];
+            ni = nf = nd = 0;
+            for (Object v : values) {
+                if (v instanceof int[]) {
+                    ints[ni++] = (int[]) v;
+                } else if (v instanceof float[]) {
+                    floats[nf++] = (float[]) v;
+                } else {
+                    doubles[nd++] = (double[]) v;
+                }
+            }
+        }
+
+        void swap(int i, int j) {
+            for (int[] v : ints) {
+                int t = v[i];
+                v[i] = v[j];
+                v[j] = t;
+            }
+            for (float[] v : floats) {
+                float t = v[i];
+                v[i] = v[j];
+                v[j] = t;
+            }
+            for (double[] v : doubles) {
+                double t = v[i];
+                v[i] = v[j];
+                v[j] = t;
+            }
+        }
+
+        /**
+         * Moves element i down to j, shifting j..i-1 up by one.
+         */
+        void insert(int i, int j) {
+            for (int[] v : ints) {
+                int t = v[i];
+                System.arraycopy(v, j, v, j + 1, i - j);
+                v[j] = t;
+            }
+            for (float[] v : floats) {
+                float t = v[i];
+                System.arraycopy(v, j, v, j + 1, i - j);
+                v[j] = t;
+            }
+            for (double[] v : doubles) {
+                double t = v[i];
+                System.arraycopy(v, j, v, j + 1, i - j);
+                v[j] = t;
+            }
+        }
+    }
 
     /**
      * Limited range insertion sort.  We assume that no element has to move more than limit steps
@@ -429,7 +826,7 @@ public class Sort {
             double v = values[order[i]];
             int m = Math.max(i - limit, start);
             for (int j = i; j >= m; j--) {
-                if (j == 0 || values[order[j - 1]] <= v) {
+                if (j == m || values[order[j - 1]] <= v) {
                     if (j < i) {
                         System.arraycopy(order, j, order, j + 1, i - j);
                         order[j] = t;
@@ -0,0 +1,144 @@
+package com.tdunning.examples;
+
+import java.util.Arrays;
+
+/**
+ * A sparse vector of integer values such as term counts for a single document. Entries are
+ * kept as parallel arrays of indexes and values with the indexes in strictly increasing order.
+ * <p>
+ * The arrays are reused when the vector is refilled, so a single SparseVector can be used to
+ * process any number of documents without allocating.
+ */
+public class SparseVector {
+    int size;
+    int[] index;
+    int[] values;
+
+    public SparseVector() {
+        this(64);
+    }
+
+    public SparseVector(int capacity) {
+        index = new int[Math.max(capacity, 1)];
+        values = new int[index.length];
+    }
+
+    /**
+     * @return The number of non-zero entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param k Which entry
+     * @return The index of the k-th non-zero entry
+     */
+    public int index(int k) {
+        return index[k];
+    }
+
+    /**
+     * @param k Which entry
+     * @return The value of the k-th non-zero entry
+     */
+    public int value(int k) {
+        return values[k];
+    }
+
+    /**
+     * Returns the value at an arbitrary index by binary search.
+     *
+     * @param i The index
+     * @return The value at i (zero if there is no entry)
+     */
+    public int get(int i) {
+        int k = Arrays.binarySearch(index, 0, size, i);
+        return k >= 0 ? values[k] : 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Turns a list of indexes with repeats that has been put in the first n slots of
+     * the index array into a proper sparse vector. Each index contributes one to the
+     * value at that index.
+     *
+     * @param n      How many indexes have been put in the index array
+     * @param binary If true, values are 1 for every index present instead of a count
+     */
+    void collapse(int n, boolean binary) {
+        Arrays.sort(index, 0, n);
+        size = 0;
+        for (int k = 0; k < n; ) {
+            int id = index[k];
+            int start = k;
+            while (k < n && index[k] == id) {
+                k++;
+            }
+            index[size] = id;
+            values[size] = binary ? 1 : k - start;
+            size++;
+        }
+    }
+
+    /**
+     * Like {@link #collapse(int, boolean)}, but the first n slots of the value array hold a value for
+     * each index and the values for repeated indexes are summed. Entries that sum to zero are dropped.
+     *
+     * @param n How many indexes and values have been put in the arrays
+     */
+    void collapseSums(int n) {
+        Sort.sort(index, 0, n, values);
+        size = 0;
+        for (int k = 0; k < n; ) {
+            int id = index[k];
+            int sum = 0;
+            while (k < n && index[k] == id) {
+                sum += values[k++];
+            }
+            if (sum != 0) {
+                index[size] = id;
+                values[size] = sum;
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Makes sure there is room for at least n entries. Existing entries are lost.
+     */
+    void reserve(int n) {
+        if (n > index.length) {
+            int m = Math.max(n, 2 * index.length);
+            index = new int[m];
+            values = new int[m];
+        }
+    }
+
+    /**
+     * Adds this vector into one row of a matrix that is being built.
+     *
+     * @param m   The matrix data
+     * @param row Which row to add to
+     */
+    public void addTo(CooData m, int row) {
+        for (int k = 0; k < size; k++) {
+            m.add(row, index[k], values[k]);
+        }
+    }
+
+    /**
+     * @param n The length of the result
+     * @return A dense copy of this vector
+     */
+    public int[] toDense(int n) {
+        int[] r = new int[n];
+        for (int k = 0; k < size; k++) {
+            r[index[k]] = values[k];
+        }
+        return r;
+    }
+}
@@ -0,0 +1,111 @@
+package com.tdunning.examples;
+
+import java.util.Arrays;
+
+/**
+ * Counts how often each term occurs in a collection of documents. This does the same job as the
+ * <code>HashMultiset&lt;String&gt;</code> we used to build dictionaries, but tokens are counted
+ * straight from the document text via a growing {@link TermDictionary} so only new terms cost an
+ * allocation.
+ * <p>
+ * A TermCounter is not thread-safe. To count in parallel, give each task its own counter and
+ * combine them with {@link #addAll(TermCounter)}.
+ */
+public class TermCounter {
+    private final TermDictionary terms = new TermDictionary(1024);
+    private final Tokenizer tokenizer = new Tokenizer();
+    private int[] counts = new int[1024];
+    private long total = 0;
+
+    /**
+     * Tokenizes a document and counts all of its tokens.
+     *
+     * @param doc The document
+     */
+    public void addDocument(CharSequence doc) {
+        int n = tokenizer.tokenize(doc);
+        for (int k = 0; k < n; k++) {
+            add(doc, tokenizer.start(k), tokenizer.end(k), 1);
+        }
+    }
+
+    /**
+     * Counts one occurrence of a term.
+     *
+     * @param term The term
+     */
+    public void add(CharSequence term) {
+        add(term, 0, term.length(), 1);
+    }
+
+    /**
+     * Counts occurrences of a term that is part of a larger text.
+     *
+     * @param text  The text containing the term
+     * @param start The offset of the first character of the term
+     * @param end   The offset just after the term
+     * @param count How many times to count the term
+     */
+    public void add(CharSequence text, int start, int end, int count) {
+        int id = terms.add(text, start, end);
+        if (id >= counts.length) {
+            counts = Arrays.copyOf(counts, 2 * id);
+        }
+        counts[id] += count;
+        total += count;
+    }
+
+    /**
+     * Adds all of the counts from another counter into this one.
+     *
+     * @param other The counts to add
+     * @return This counter
+     */
+    public TermCounter addAll(TermCounter other) {
+        for (int id = 0; id < other.terms.size(); id++) {
+            String term = other.terms.term(id);
+            add(term, 0, term.length(), other.counts[id]);
+        }
+        return this;
+    }
+
+    /**
+     * @param term The term
+     * @return How many times the term has been seen
+     */
+    public int count(CharSequence term) {
+        int id = terms.get(term);
+        return id >= 0 ? counts[id] : 0;
+    }
+
+    /**
+     * @return The number of distinct terms
+     */
+    public int size() {
+        return terms.size();
+    }
+
+    /**
+     * @return The total number of terms counted, including repeats
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Builds a dictionary of the terms that occur often enough. Ids are assigned in the order that
+     * terms were first seen.
+     *
+     * @param minCount The minimum number of occurrences for a term to be kept
+     * @return A frozen dictionary
+     */
+    public TermDictionary dictionary(int minCount) {
+        TermDictionary r = new TermDictionary();
+        for (int id = 0; id < terms.size(); id++) {
+            if (counts[id] >= minCount) {
+                r.add(terms.term(id));
+            }
+        }
+        return r.freeze();
+    }
+}
@@ -0,0 +1,246 @@
+package com.tdunning.examples;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Maps terms to dense integer ids and back again. This is an open-addressed hash table that
+ * stores nothing but ints, so lookups don't box anything and, more importantly, can be done
+ * directly on a range of characters in a document without first building a String.
+ * <p>
+ * Terms are normalized to lower case (ASCII only, which is all that {@link Tokenizer} ever
+ * produces) both when they are added and when they are looked up.
+ * <p>
+ * A dictionary can be grown by calling {@link #add(CharSequence)} until it is frozen. After
+ * {@link #freeze()}, any attempt to add a term throws an exception and the dictionary can be
+ * shared freely between threads.
+ */
+public class TermDictionary {
+    private static final int EMPTY = -1;
+
+    private String[] terms;
+    private int[] hashes;
+    private int[] table;
+    private int mask;
+    private int size;
+    private boolean frozen;
+
+    public TermDictionary() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize How many terms we expect to add. The table is sized to hold this
+     *                     many without rehashing.
+     */
+    public TermDictionary(int expectedSize) {
+        int capacity = Math.max(16, Integer.highestOneBit(Math.max(1, expectedSize) * 2 - 1) * 2);
+        terms = new String[Math.max(16, expectedSize)];
+        hashes = new int[terms.length];
+        table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Builds a frozen dictionary with the same ids as an existing map.
+     *
+     * @param dictionary A map from term to id. The ids must be exactly 0 to size-1.
+     * @return The new dictionary
+     */
+    public static TermDictionary from(Map<String, Integer> dictionary) {
+        int n = dictionary.size();
+        TermDictionary r = new TermDictionary(n);
+        for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+            int id = entry.getValue();
+            if (id < 0 || id >= n || r.terms[id] != null) {
+                throw new IllegalArgumentException(String.format("Invalid or duplicated id %d for %s", id, entry.getKey()));
+            }
+            String term = entry.getKey();
+            int h = hash(term, 0, term.length());
+            if (r.find(term, 0, term.length(), h) != EMPTY) {
+                throw new IllegalArgumentException(String.format("Duplicated term %s", term));
+            }
+            r.insert(normalize(term, 0, term.length()), h, id);
+        }
+        r.size = n;
+        r.freeze();
+        return r;
+    }
+
+    /**
+     * Adds a term if it isn't already present.
+     *
+     * @param term The term to add.
+     * @return The id of the term.
+     */
+    public int add(CharSequence term) {
+        return add(term, 0, term.length());
+    }
+
+    /**
+     * Adds a range of characters as a term if it isn't already present. A String is only
+     * allocated if the term is new.
+     *
+     * @param text  Text containing the term.
+     * @param start The offset of the first character of the term.
+     * @param end   The offset just after the term.
+     * @return The id of the term.
+     */
+    public int add(CharSequence text, int start, int end) {
+        if (frozen) {
+            throw new IllegalStateException("Can't add terms to a frozen dictionary");
+        }
+        int h = hash(text, start, end);
+        int id = find(text, start, end, h);
+        if (id == EMPTY) {
+            id = size;
+            if (id >= terms.length) {
+                terms = Arrays.copyOf(terms, 2 * id);
+                hashes = Arrays.copyOf(hashes, 2 * id);
+            }
+            if (2 * (id + 1) > table.length) {
+                rehash(2 * table.length);
+            }
+            insert(normalize(text, start, end), h, id);
+            size++;
+        }
+        return id;
+    }
+
+    /**
+     * @param term The term to look for.
+     * @return The id of the term or -1 if it isn't in the dictionary.
+     */
+    public int get(CharSequence term) {
+        return get(term, 0, term.length());
+    }
+
+    /**
+     * Looks up a term that is part of a larger text, typically one that was found by a {@link Tokenizer}.
+     *
+     * @param text  Text containing the term.
+     * @param start The offset of the first character of the term.
+     * @param end   The offset just after the term.
+     * @return The id of the term or -1 if it isn't in the dictionary.
+     */
+    public int get(CharSequence text, int start, int end) {
+        return find(text, start, end, hash(text, start, end));
+    }
+
+    /**
+     * @param term The term to look for.
+     * @return Whether the term is in the dictionary.
+     */
+    public boolean contains(CharSequence term) {
+        return get(term) != EMPTY;
+    }
+
+    /**
+     * The reverse mapping from id to term.
+     *
+     * @param id The id of a term.
+     * @return The term.
+     */
+    public String term(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException(String.format("Invalid id %d (should be in [0,%d))", id, size));
+        }
+        return terms[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Prevents any further terms from being added.
+     *
+     * @return This dictionary
+     */
+    public TermDictionary freeze() {
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private int find(CharSequence text, int start, int end, int h) {
+        int length = end - start;
+        for (int slot = mix(h) & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot];
+            if (id == EMPTY) {
+                return EMPTY;
+            }
+            if (hashes[id] == h) {
+                String term = terms[id];
+                if (term.length() == length && matches(term, text, start)) {
+                    return id;
+                }
+            }
+        }
+    }
+
+    private static boolean matches(String term, CharSequence text, int start) {
+        for (int i = 0; i < term.length(); i++) {
+            if (term.charAt(i) != Tokenizer.lower(text.charAt(start + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(String term, int h, int id) {
+        terms[id] = term;
+        hashes[id] = h;
+        int slot = mix(h) & mask;
+        while (table[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id;
+        }
+    }
+
+    private static String normalize(CharSequence text, int start, int end) {
+        char[] buf = new char[end - start];
+        for (int i = 0; i < buf.length; i++) {
+            buf[i] = Tokenizer.lower(text.charAt(start + i));
+        }
+        return new String(buf);
+    }
+
+    /**
+     * Same as {@link String#hashCode()} of the lower-cased term.
+     */
+    static int hash(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + Tokenizer.lower(text.charAt(i));
+        }
+        return h;
+    }
+
+    // the String hash is weak in the low bits so we finish with a murmur step before probing
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,188 @@
+package com.tdunning.examples;
+
+import java.util.Arrays;
+
+/**
+ * Hand-written scanner that finds exactly the same tokens as the regular expression used by
+ * {@link VectorText#regexTokenize(CharSequence)}, but without a Matcher and without allocating
+ * anything per token. The boundaries of each token are written into reusable offset buffers so
+ * that callers can look tokens up directly in the original text and only build a String if they
+ * really need one.
+ * <p>
+ * The token classes mirror the alternatives of the pattern, in the same priority:
+ * <ul>
+ *     <li>numbers with a colon and single digit decimals such as <code>12:.5.3</code></li>
+ *     <li>words, that is, runs of ASCII letters, digits or underscore</li>
+ *     <li>@ and # handles, possibly with embedded hyphens or apostrophes</li>
+ *     <li>dollar amounts with optional cents and percent sign</li>
+ *     <li>escaped unicode such as <code>&#92;u00e9t</code></li>
+ * </ul>
+ * URLs and contractions in the pattern can never win against the plain word alternative so they
+ * come out as sequences of words here as well.
+ * <p>
+ * A Tokenizer is not thread-safe, but it is cheap to keep one per thread and reuse it for every
+ * document.
+ */
+public class Tokenizer {
+    private CharSequence text;
+    private int tokens;
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+
+    /**
+     * Finds all of the tokens in a string. Any previous results are discarded.
+     *
+     * @param s The text to scan.
+     * @return The number of tokens found.
+     */
+    public int tokenize(CharSequence s) {
+        text = s;
+        tokens = 0;
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            int end = match(s, i, n);
+            if (end > i) {
+                if (tokens >= starts.length) {
+                    starts = Arrays.copyOf(starts, 2 * tokens);
+                    ends = Arrays.copyOf(ends, 2 * tokens);
+                }
+                starts[tokens] = i;
+                ends[tokens] = end;
+                tokens++;
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * @return The number of tokens found by the last call to {@link #tokenize(CharSequence)}
+     */
+    public int size() {
+        return tokens;
+    }
+
+    /**
+     * @return The text that was last tokenized
+     */
+    public CharSequence text() {
+        return text;
+    }
+
+    /**
+     * @param k Which token
+     * @return The offset of the first character of the k-th token
+     */
+    public int start(int k) {
+        return starts[k];
+    }
+
+    /**
+     * @param k Which token
+     * @return The offset just after the last character of the k-th token
+     */
+    public int end(int k) {
+        return ends[k];
+    }
+
+    /**
+     * Materializes a token as a lower-cased String. This is the only place that allocates.
+     *
+     * @param k Which token
+     * @return The token, lower-cased the same way that {@link VectorText#tokenize(CharSequence)} does.
+     */
+    public String token(int k) {
+        int start = starts[k];
+        char[] buf = new char[ends[k] - start];
+        for (int i = 0; i < buf.length; i++) {
+            buf[i] = lower(text.charAt(start + i));
+        }
+        return new String(buf);
+    }
+
+    /**
+     * Lower cases a character from a token. All of the characters that can be part of a token
+     * are ASCII so this is much simpler than {@link Character#toLowerCase(char)}.
+     */
+    static char lower(char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * Tries to match a token starting exactly at offset i.
+     *
+     * @return The end of the token or -1 if no token starts at i
+     */
+    private static int match(CharSequence s, int i, int n) {
+        char c = s.charAt(i);
+        if (isDigit(c)) {
+            // a number like 12:.5.3 has priority over a plain word
+            int j = digits(s, i + 1, n);
+            if (j < n && s.charAt(j) == ':') {
+                int k = j + 1;
+                while (k + 1 < n && s.charAt(k) == '.' && isDigit(s.charAt(k + 1))) {
+                    k += 2;
+                }
+                if (k > j + 1) {
+                    return k;
+                }
+            }
+            return word(s, j, n);
+        } else if (isWord(c)) {
+            return word(s, i + 1, n);
+        } else if (c == '@' || c == '#') {
+            // twitter-like user reference
+            if (i + 1 < n && isWord(s.charAt(i + 1))) {
+                int j = word(s, i + 2, n);
+                while (j + 1 < n && (s.charAt(j) == '-' || s.charAt(j) == '\'') && isWord(s.charAt(j + 1))) {
+                    j = word(s, j + 2, n);
+                }
+                return j;
+            }
+        } else if (c == '$') {
+            // dollar amount
+            if (i + 1 < n && isDigit(s.charAt(i + 1))) {
+                int j = digits(s, i + 2, n);
+                if (j + 1 < n && s.charAt(j) == '.' && isDigit(s.charAt(j + 1))) {
+                    j = digits(s, j + 2, n);
+                }
+                if (j < n && s.charAt(j) == '%') {
+                    j++;
+                }
+                return j;
+            }
+        } else if (c == '\\') {
+            // escaped unicode
+            if (i + 2 < n && (s.charAt(i + 1) == 'u' || s.charAt(i + 1) == 'U') && isWord(s.charAt(i + 2))) {
+                return word(s, i + 3, n);
+            }
+        }
+        return -1;
+    }
+
+    private static int word(CharSequence s, int i, int n) {
+        while (i < n && isWord(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int digits(CharSequence s, int i, int n) {
+        while (i < n && isDigit(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // same as \w in a java regex without UNICODE_CHARACTER_CLASS
+    private static boolean isWord(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
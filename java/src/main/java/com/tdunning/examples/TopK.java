@@ -0,0 +1,126 @@
+package com.tdunning.examples;
+
+/**
+ * Keeps the k highest scoring ids from a stream of candidates. This is a min-heap on two primitive
+ * arrays so that offering a candidate allocates nothing and a candidate that doesn't beat the
+ * current k-th best is rejected with a single comparison.
+ * <p>
+ * A TopK can be reused by calling {@link #clear()}.
+ */
+public class TopK {
+    private final int[] ids;
+    private final double[] scores;
+    private int size;
+
+    /**
+     * @param k The maximum number of ids to keep
+     */
+    public TopK(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException(String.format("Must keep at least one result, got %d", k));
+        }
+        ids = new int[k];
+        scores = new double[k];
+    }
+
+    /**
+     * Offers a candidate. If there are already k candidates, this one replaces the lowest scoring
+     * one if it scores higher.
+     *
+     * @param id    The candidate
+     * @param score Its score
+     * @return True if the candidate was kept (for now)
+     */
+    public boolean offer(int id, double score) {
+        if (size < ids.length) {
+            // sift up from the new leaf
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (scores[parent] <= score) {
+                    break;
+                }
+                ids[i] = ids[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            ids[i] = id;
+            scores[i] = score;
+            return true;
+        } else if (score > scores[0]) {
+            siftDown(id, score, size);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * @return The lowest score that could still be kept, negative infinity until k candidates have been seen
+     */
+    public double threshold() {
+        return size < ids.length ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Sorts the kept candidates by decreasing score. After this, {@link #id(int)} and {@link #score(int)}
+     * give the results in order. This destroys the heap so nothing more should be offered until
+     * {@link #clear()} is called.
+     */
+    public void sort() {
+        // heap sort, repeatedly moving the smallest remaining score to the end
+        for (int n = size - 1; n > 0; n--) {
+            int id = ids[n];
+            double score = scores[n];
+            ids[n] = ids[0];
+            scores[n] = scores[0];
+            siftDown(id, score, n);
+        }
+    }
+
+    /**
+     * @return The k-th id kept. In no particular order unless {@link #sort()} has been called.
+     */
+    public int id(int k) {
+        return ids[k];
+    }
+
+    /**
+     * @return The score of the k-th id kept
+     */
+    public double score(int k) {
+        return scores[k];
+    }
+
+    /**
+     * Puts id and score at the root of the heap of size n and moves them down to where they belong.
+     */
+    private void siftDown(int id, double score, int n) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) {
+                break;
+            }
+            if (child + 1 < n && scores[child + 1] < scores[child]) {
+                child++;
+            }
+            if (scores[child] >= score) {
+                break;
+            }
+            ids[i] = ids[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        ids[i] = id;
+        scores[i] = score;
+    }
+}
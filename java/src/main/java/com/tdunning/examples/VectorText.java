@@ -4,10 +4,13 @@ import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 public class VectorText {
+    private static final ThreadLocal<Tokenizer> tokenizers = ThreadLocal.withInitial(Tokenizer::new);
+
     private static Pattern word = Pattern.compile(String.join("", "",
 //            "([A-Z]\\.)+",                                  // a word
             "\\d+:(\\.\\d)+",                              // a number
@@ -21,6 +24,21 @@ public class VectorText {
 
     @SuppressWarnings("WeakerAccess")
     public static Stream<String> tokenize(CharSequence s) {
+        // the offsets are found eagerly so the stream knows its size and can be split
+        Tokenizer tokenizer = new Tokenizer();
+        int n = tokenizer.tokenize(s);
+        return IntStream.range(0, n).mapToObj(tokenizer::token);
+    }
+
+    /**
+     * The original tokenizer based on a regular expression. This is kept as the reference
+     * definition of what a token is and for comparing speed against {@link Tokenizer}.
+     *
+     * @param s The text to tokenize
+     * @return A stream of lower-cased tokens
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static Stream<String> regexTokenize(CharSequence s) {
         Iterator<String> is = new Iterator<String>() {
             int position = 0;
             Matcher m = word.matcher(s);
@@ -36,7 +54,7 @@ public class VectorText {
                 return m.group().toLowerCase();
             }
         };
-        int characteristics = Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.IMMUTABLE;
+        int characteristics = Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
         Spliterator<String> spliterator = Spliterators.spliteratorUnknownSize(is, characteristics);
 
         return StreamSupport.stream(spliterator, false);
@@ -66,4 +84,88 @@ public class VectorText {
         });
         return result;
     }
+
+    /**
+     * Converts a document to a binary vector indicating which dictionary terms it contains.
+     * Tokens are looked up directly in the document text so no Strings are built.
+     *
+     * @param dictionary The terms to look for
+     * @param s          The document
+     * @return A vector with a 1 for each dictionary term that appears in the document
+     */
+    public static int[] vectorize(TermDictionary dictionary, CharSequence s) {
+        int[] result = new int[dictionary.size()];
+        Tokenizer tokenizer = tokenizers.get();
+        int n = tokenizer.tokenize(s);
+        for (int k = 0; k < n; k++) {
+            int id = dictionary.get(s, tokenizer.start(k), tokenizer.end(k));
+            if (id >= 0) {
+                result[id] = 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts how many times each dictionary term appears in a document. Tokens are looked up
+     * directly in the document text so no Strings are built.
+     *
+     * @param dictionary The terms to look for
+     * @param s          The document
+     * @return A vector of counts for each dictionary term
+     */
+    public static int[] count(TermDictionary dictionary, CharSequence s) {
+        int[] result = new int[dictionary.size()];
+        Tokenizer tokenizer = tokenizers.get();
+        int n = tokenizer.tokenize(s);
+        for (int k = 0; k < n; k++) {
+            int id = dictionary.get(s, tokenizer.start(k), tokenizer.end(k));
+            if (id >= 0) {
+                result[id]++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sparse version of {@link #vectorize(TermDictionary, CharSequence)}. This avoids allocating
+     * a vector as large as the dictionary for every document.
+     *
+     * @param dictionary The terms to look for
+     * @param s          The document
+     * @param result     Where to put the result. Any previous contents are overwritten.
+     * @return The result vector with a 1 for each dictionary term that appears in the document
+     */
+    public static SparseVector vectorize(TermDictionary dictionary, CharSequence s, SparseVector result) {
+        lookup(dictionary, s, result, true);
+        return result;
+    }
+
+    /**
+     * Sparse version of {@link #count(TermDictionary, CharSequence)}. This avoids allocating
+     * a vector as large as the dictionary for every document.
+     *
+     * @param dictionary The terms to look for
+     * @param s          The document
+     * @param result     Where to put the result. Any previous contents are overwritten.
+     * @return The result vector with counts for each dictionary term in the document
+     */
+    public static SparseVector count(TermDictionary dictionary, CharSequence s, SparseVector result) {
+        lookup(dictionary, s, result, false);
+        return result;
+    }
+
+    private static void lookup(TermDictionary dictionary, CharSequence s, SparseVector result, boolean binary) {
+        Tokenizer tokenizer = tokenizers.get();
+        int n = tokenizer.tokenize(s);
+        result.reserve(n);
+        int m = 0;
+        for (int k = 0; k < n; k++) {
+            int id = dictionary.get(s, tokenizer.start(k), tokenizer.end(k));
+            if (id >= 0) {
+                result.index[m++] = id;
+            }
+        }
+        result.collapse(m, binary);
+    }
 }
@@ -0,0 +1,381 @@
+package com.tdunning.examples;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A table of pretrained word vectors, such as GloVe, read straight from a memory-mapped file.
+ * <p>
+ * Parsing the text form of these tables takes minutes because every one of the tens of millions
+ * of numbers has to be converted from decimal. {@link #convert(Path, Path)} does that once and
+ * writes a binary file that {@link #open(Path)} can map into memory in milliseconds. The vectors
+ * are never copied onto the heap, so the operating system only reads the pages that are actually
+ * used and several processes that open the same file share a single copy in the page cache.
+ * <p>
+ * The binary layout is little-endian throughout:
+ * <pre>
+ *   header (32 bytes)  magic, version, rows, dimension (4 ints), vocabulary offset (long), padding
+ *   vectors            rows x dimension float32 values in row-major order
+ *   vocabulary         for each row, the length of the term in bytes (int) and the term as UTF-8
+ * </pre>
+ * Terms are normalized the same way as in {@link TermDictionary}, whose ids are the row numbers.
+ * If the text file has several terms that normalize to the same thing, only the first is kept.
+ * Since the pretrained tables list words in decreasing order of frequency, that is the most common
+ * variant.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public class WordVectors {
+    private static final int MAGIC = 0x43455657;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private final TermDictionary dictionary;
+    private final int dimension;
+    private final int rowsPerSegment;
+    private final FloatBuffer[] segments;
+
+    private WordVectors(TermDictionary dictionary, int dimension, int rowsPerSegment, FloatBuffer[] segments) {
+        this.dictionary = dictionary;
+        this.dimension = dimension;
+        this.rowsPerSegment = rowsPerSegment;
+        this.segments = segments;
+    }
+
+    /**
+     * Converts word vectors in the text format used by GloVe and word2vec to the binary format. Each
+     * line of the text has a word followed by the components of its vector, all separated by single
+     * spaces. The word2vec format also starts with a line giving the number of vectors and the
+     * dimension. Otherwise, the dimension is taken from the first line. Every line must have exactly
+     * that many values.
+     *
+     * @param text   The file to read
+     * @param binary The file to write
+     * @return The number of vectors written
+     * @throws IOException If the text can't be read or parsed, or the output can't be written
+     */
+    public static int convert(Path text, Path binary) throws IOException {
+        return convert(text, binary, false);
+    }
+
+    /**
+     * Converts word vectors in text format to the binary format, optionally allowing words with spaces.
+     * Some of the larger tables have a few of these, so with multiWordTerms set, the components are
+     * taken from the end of each line and whatever precedes them is the word. The dimension must then
+     * come from a word2vec header or from a first line whose word has no spaces.
+     *
+     * @param text           The file to read
+     * @param binary         The file to write
+     * @param multiWordTerms If true, lines with extra fields are taken to have words with spaces in them
+     *                       rather than being rejected
+     * @return The number of vectors written
+     * @throws IOException If the text can't be read or parsed, or the output can't be written
+     */
+    public static int convert(Path text, Path binary, boolean multiWordTerms) throws IOException {
+        TermDictionary dictionary = new TermDictionary(100000);
+        ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        try (BufferedReader in = Files.newBufferedReader(text, StandardCharsets.UTF_8);
+             FileChannel out = FileChannel.open(binary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            // the header is written last when the sizes are known
+            out.position(HEADER_SIZE);
+            int dimension = -1;
+            float[] v = null;
+            int lineNumber = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                int end = line.length();
+                while (end > 0 && Character.isWhitespace(line.charAt(end - 1))) {
+                    end--;
+                }
+                if (end == 0) {
+                    continue;
+                }
+                if (dimension < 0) {
+                    int header = headerDimension(line, end);
+                    if (header > 0) {
+                        dimension = header;
+                        v = new float[dimension];
+                        continue;
+                    }
+                    dimension = 0;
+                    for (int i = 0; i < end; i++) {
+                        if (line.charAt(i) == ' ') {
+                            dimension++;
+                        }
+                    }
+                    if (dimension == 0) {
+                        throw new IOException(String.format("No vector on line %d of %s", lineNumber, text));
+                    }
+                    v = new float[dimension];
+                }
+                for (int k = dimension - 1; k >= 0; k--) {
+                    int space = line.lastIndexOf(' ', end - 1);
+                    if (space <= 0) {
+                        throw new IOException(String.format("Expected %d values on line %d of %s", dimension, lineNumber, text));
+                    }
+                    try {
+                        v[k] = Float.parseFloat(line.substring(space + 1, end));
+                    } catch (NumberFormatException e) {
+                        throw new IOException(String.format("Bad value on line %d of %s", lineNumber, text), e);
+                    }
+                    end = space;
+                }
+                if (!multiWordTerms && line.lastIndexOf(' ', end - 1) >= 0) {
+                    throw new IOException(String.format("Expected %d values on line %d of %s", dimension, lineNumber, text));
+                }
+
+                int before = dictionary.size();
+                dictionary.add(line, 0, end);
+                if (dictionary.size() == before) {
+                    continue;
+                }
+                for (int i = 0; i < dimension; i++) {
+                    if (buf.remaining() < 4) {
+                        flush(buf, out);
+                    }
+                    buf.putFloat(v[i]);
+                }
+            }
+            if (dimension < 0) {
+                throw new IOException(String.format("No vectors found in %s", text));
+            }
+
+            int rows = dictionary.size();
+            long vocabulary = HEADER_SIZE + 4L * rows * dimension;
+            for (int row = 0; row < rows; row++) {
+                byte[] bytes = dictionary.term(row).getBytes(StandardCharsets.UTF_8);
+                if (buf.remaining() < 4) {
+                    flush(buf, out);
+                }
+                buf.putInt(bytes.length);
+                for (int k = 0; k < bytes.length; ) {
+                    if (!buf.hasRemaining()) {
+                        flush(buf, out);
+                    }
+                    int n = Math.min(buf.remaining(), bytes.length - k);
+                    buf.put(bytes, k, n);
+                    k += n;
+                }
+            }
+            flush(buf, out);
+
+            buf.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(dimension).putLong(vocabulary);
+            while (buf.position() < HEADER_SIZE) {
+                buf.put((byte) 0);
+            }
+            buf.flip();
+            out.write(buf, 0);
+            return rows;
+        }
+    }
+
+    /**
+     * Recognizes the word2vec header line, which is just the number of vectors and the dimension.
+     *
+     * @return The dimension from the header, or -1 if the line isn't a header
+     */
+    private static int headerDimension(String line, int end) {
+        int space = line.indexOf(' ');
+        if (space <= 0 || space >= end) {
+            return -1;
+        }
+        int next = line.indexOf(' ', space + 1);
+        if (next >= 0 && next < end) {
+            return -1;
+        }
+        try {
+            int rows = Integer.parseInt(line.substring(0, space));
+            int dimension = Integer.parseInt(line.substring(space + 1, end));
+            return rows >= 0 && dimension > 0 ? dimension : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void flush(ByteBuffer buf, FileChannel out) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        buf.clear();
+    }
+
+    /**
+     * Maps a file written by {@link #convert(Path, Path)}. Only the vocabulary is read eagerly.
+     *
+     * @param binary The file to open
+     * @return The word vectors
+     * @throws IOException If the file can't be read or isn't in the right format
+     */
+    public static WordVectors open(Path binary) throws IOException {
+        return open(binary, Integer.MAX_VALUE);
+    }
+
+    /**
+     * A single mapping is limited to 2GB so large tables are mapped in several segments, each of which
+     * holds a whole number of rows. This lets tests force more than one segment.
+     */
+    static WordVectors open(Path binary, int maxRowsPerSegment) throws IOException {
+        try (FileChannel in = FileChannel.open(binary, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException(String.format("%s is too short to be a word vector file", binary));
+            }
+            ByteBuffer header = in.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) {
+                throw new IOException(String.format("%s is not a word vector file", binary));
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(String.format("Unsupported version %d in %s", version, binary));
+            }
+            int rows = header.getInt();
+            int dimension = header.getInt();
+            long vocabulary = header.getLong();
+            if (rows < 0 || dimension <= 0 || vocabulary != HEADER_SIZE + 4L * rows * dimension
+                    || vocabulary > size || size - vocabulary > Integer.MAX_VALUE) {
+                throw new IOException(String.format("Inconsistent header in %s", binary));
+            }
+
+            int rowsPerSegment = Math.max(1, Math.min(maxRowsPerSegment, Integer.MAX_VALUE / (4 * dimension)));
+            FloatBuffer[] segments = new FloatBuffer[Math.max(1, (rows + rowsPerSegment - 1) / rowsPerSegment)];
+            for (int s = 0; s < segments.length; s++) {
+                long start = HEADER_SIZE + 4L * s * rowsPerSegment * dimension;
+                int n = Math.min(rowsPerSegment, rows - s * rowsPerSegment);
+                MappedByteBuffer segment = in.map(FileChannel.MapMode.READ_ONLY, start, 4L * n * dimension);
+                segments[s] = segment.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            }
+
+            ByteBuffer terms = in.map(FileChannel.MapMode.READ_ONLY, vocabulary, size - vocabulary);
+            terms.order(ByteOrder.LITTLE_ENDIAN);
+            TermDictionary dictionary = new TermDictionary(rows);
+            byte[] bytes = new byte[64];
+            for (int row = 0; row < rows; row++) {
+                if (terms.remaining() < 4) {
+                    throw new IOException(String.format("Vocabulary of %s is truncated", binary));
+                }
+                int n = terms.getInt();
+                if (n < 0 || n > terms.remaining()) {
+                    throw new IOException(String.format("Vocabulary of %s is truncated", binary));
+                }
+                if (bytes.length < n) {
+                    bytes = new byte[Math.max(n, 2 * bytes.length)];
+                }
+                terms.get(bytes, 0, n);
+                if (dictionary.add(new String(bytes, 0, n, StandardCharsets.UTF_8)) != row) {
+                    throw new IOException(String.format("Duplicated term in vocabulary of %s at row %d", binary, row));
+                }
+            }
+            return new WordVectors(dictionary.freeze(), dimension, rowsPerSegment, segments);
+        }
+    }
+
+    /**
+     * @return The number of vectors
+     */
+    public int size() {
+        return dictionary.size();
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * @return A frozen dictionary whose ids are the row numbers of the vectors
+     */
+    public TermDictionary dictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @param term The term to look for
+     * @return The row of the vector for the term, or -1 if there isn't one
+     */
+    public int row(CharSequence term) {
+        return dictionary.get(term);
+    }
+
+    /**
+     * @param row The row of a vector
+     * @return The (normalized) term for that row
+     */
+    public String term(int row) {
+        return dictionary.term(row);
+    }
+
+    /**
+     * @param row The row of a vector
+     * @param i   Which component to get
+     * @return One component of a vector
+     */
+    public float get(int row, int i) {
+        return segments[row / rowsPerSegment].get((row % rowsPerSegment) * dimension + i);
+    }
+
+    /**
+     * A read-only view of one vector in the mapped file. Nothing is copied.
+     *
+     * @param row The row of the vector
+     * @return A buffer with the components of the vector at positions 0 to dimension-1
+     */
+    public FloatBuffer view(int row) {
+        FloatBuffer r = segments[row / rowsPerSegment].duplicate();
+        int offset = (row % rowsPerSegment) * dimension;
+        r.limit(offset + dimension).position(offset);
+        return r.slice();
+    }
+
+    /**
+     * Copies one vector.
+     *
+     * @param row    The row of the vector
+     * @param result Where to put the components. This must have length of at least the dimension.
+     * @return The result
+     */
+    public float[] vector(int row, float[] result) {
+        view(row).get(result, 0, dimension);
+        return result;
+    }
+
+    /**
+     * Adds one vector, times a weight, to a running sum.
+     *
+     * @param row    The row of the vector
+     * @param weight How much of the vector to add, such as an IDF weight
+     * @param sum    The vector to add to
+     */
+    public void add(int row, float weight, float[] sum) {
+        FloatBuffer segment = segments[row / rowsPerSegment];
+        int offset = (row % rowsPerSegment) * dimension;
+        for (int i = 0; i < dimension; i++) {
+            sum[i] += weight * segment.get(offset + i);
+        }
+    }
+
+    /**
+     * @param row The row of a vector
+     * @param q   Another vector with length of at least the dimension
+     * @return The dot product of the vector in the given row with q
+     */
+    public double dot(int row, float[] q) {
+        FloatBuffer segment = segments[row / rowsPerSegment];
+        int offset = (row % rowsPerSegment) * dimension;
+        double sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += segment.get(offset + i) * q[i];
+        }
+        return sum;
+    }
+}
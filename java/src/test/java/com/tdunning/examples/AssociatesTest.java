@@ -0,0 +1,109 @@
+package com.tdunning.examples;
+
+import org.junit.Test;
+import smile.math.matrix.SparseMatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AssociatesTest {
+    @Test
+    public void llr() {
+        assertEquals(2.772588722239781, Associates.llr(1, 0, 0, 1), 1e-12);
+        assertEquals(27.725887222397812, Associates.llr(10, 0, 0, 10), 1e-11);
+        assertEquals(0, Associates.llr(10, 10, 10, 10), 1e-12);
+
+        Random rand = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            double k11 = rand.nextInt(100);
+            double k12 = rand.nextInt(1000);
+            double k21 = rand.nextInt(1000);
+            double k22 = rand.nextInt(100000);
+            double expected = 2 * (h(k11 + k12, k21 + k22) + h(k11 + k21, k12 + k22) - h(k11, k12, k21, k22));
+            assertEquals(expected, Associates.llr(k11, k12, k21, k22), 1e-8 * Math.max(1, expected));
+        }
+    }
+
+    @Test
+    public void associates() {
+        // documents with some planted pairs of words that tend to go together
+        Random rand = new Random(2);
+        int terms = 300;
+        int docs = 5000;
+        CooData data = new CooData(docs, terms);
+        for (int d = 0; d < docs; d++) {
+            for (int w = 0; w < 8; w++) {
+                int t = rand.nextInt(terms);
+                data.add(d, t, 1);
+                if (t % 2 == 0 && rand.nextDouble() < 0.5) {
+                    data.add(d, t + 1, 1);
+                }
+            }
+        }
+        data.compress(CooData.ElementOrdering.BY_COL, false);
+        for (int k = 0; k < data.entries; k++) {
+            data.values[k] = 1;
+        }
+        SparseMatrix docByTerms = data.asSparseMatrix();
+        double[] counts = new double[terms];
+        docByTerms.foreachNonzero((d, t, x) -> counts[t]++);
+        SparseMatrix cooc = docByTerms.ata();
+
+        int maxAssociates = 5;
+        double minScore = 3;
+        SparseMatrix scores = new Associates(minScore, maxAssociates).scores(cooc, counts, docs);
+        SparseMatrix indicators = new Associates(minScore, maxAssociates).indicators(cooc, counts, docs);
+        assertEquals(terms, scores.ncols());
+        assertEquals(scores.size(), indicators.size());
+
+        for (int j = 0; j < terms; j++) {
+            // brute force version of the same thing
+            List<double[]> candidates = new ArrayList<>();
+            int word = j;
+            cooc.foreachNonzero(j, j + 1, (i, jx, k11) -> {
+                double score = Associates.llr(k11, counts[i] - k11, counts[word] - k11, docs - counts[i] - counts[word] + k11);
+                if (i != word && score > minScore) {
+                    candidates.add(new double[]{i, score});
+                }
+            });
+            candidates.sort((a, b) -> Double.compare(b[1], a[1]));
+
+            List<double[]> found = new ArrayList<>();
+            scores.foreachNonzero(j, j + 1, (i, jx, x) -> found.add(new double[]{i, x}));
+            assertEquals(Math.min(maxAssociates, candidates.size()), found.size());
+            for (int k = 1; k < found.size(); k++) {
+                assertTrue(found.get(k - 1)[0] < found.get(k)[0]);
+            }
+            for (double[] f : found) {
+                assertEquals(Associates.llr(cooc.get((int) f[0], j), counts[(int) f[0]] - cooc.get((int) f[0], j),
+                        counts[j] - cooc.get((int) f[0], j), docs - counts[(int) f[0]] - counts[j] + cooc.get((int) f[0], j)), f[1], 1e-9);
+                if (found.size() == maxAssociates) {
+                    assertTrue(f[1] >= candidates.get(maxAssociates - 1)[1] - 1e-9);
+                }
+                assertEquals(1, indicators.get((int) f[0], j), 0);
+            }
+
+            // the planted partner should be found
+            if (j % 2 == 0) {
+                assertTrue(scores.get(j + 1, j) > 0);
+            }
+        }
+    }
+
+    private double h(double... kxx) {
+        double sum = 0;
+        for (double k : kxx) {
+            sum += k;
+        }
+        double r = 0;
+        for (double k : kxx) {
+            if (k > 0) {
+                r -= k * Math.log(k / sum);
+            }
+        }
+        return r;
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.Test;
 import smile.math.matrix.SparseMatrix;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.*;
 
@@ -88,6 +89,274 @@ public class CooDataTest {
 
     }
 
+    @Test
+    public void wideIndexes() {
+        // indexes that are too spread out for counting sort use the comparison sort instead
+        Random rand = new Random(3);
+        CooData m = new CooData();
+        Map<Long, Double> ref = new HashMap<>();
+        for (int step = 0; step < 5000; step++) {
+            int i = rand.nextInt(50) * 10000000;
+            int j = rand.nextInt(1000);
+            double x = rand.nextGaussian();
+            m.add(i, j, x);
+            ref.merge(((long) i << 32) | j, x, Double::sum);
+        }
+        m.compress(CooData.ElementOrdering.BY_ROW, false);
+        assertEquals(ref.size(), m.entries);
+        for (int k = 0; k < m.entries; k++) {
+            assertEquals(ref.get(((long) m.rows[k] << 32) | m.cols[k]), m.values[k], 1e-12);
+            if (k > 0) {
+                assertTrue(m.rows[k - 1] < m.rows[k] || (m.rows[k - 1] == m.rows[k] && m.cols[k - 1] < m.cols[k]));
+            }
+        }
+    }
+
+    @Test
+    public void wideCounts() {
+        // the comparison sort has to carry int values along as well
+        Random rand = new Random(5);
+        IntCooData m = new IntCooData();
+        Map<Long, Integer> ref = new HashMap<>();
+        for (int step = 0; step < 5000; step++) {
+            int i = rand.nextInt(1000);
+            int j = rand.nextInt(50) * 10000000;
+            m.add(i, j, 1);
+            ref.merge(((long) i << 32) | j, 1, Integer::sum);
+        }
+        m.compress(CooData.ElementOrdering.BY_COL, false);
+        assertEquals(ref.size(), m.entries);
+        for (int k = 0; k < m.entries; k++) {
+            assertEquals(ref.get(((long) m.rows[k] << 32) | m.cols[k]).intValue(), m.values[k]);
+            if (k > 0) {
+                assertTrue(m.cols[k - 1] < m.cols[k] || (m.cols[k - 1] == m.cols[k] && m.rows[k - 1] < m.rows[k]));
+            }
+        }
+    }
+
+    @Test
+    public void merge() {
+        Random rand = new Random(1);
+        List<CooData> parts = new ArrayList<>();
+        Map<Long, Double> ref = new HashMap<>();
+        for (int p = 0; p < 5; p++) {
+            CooData part = new CooData(200, 300);
+            for (int step = 0; step < 2000; step++) {
+                int i = rand.nextInt(200);
+                int j = rand.nextInt(p == 2 ? 10 : 300);
+                double x = rand.nextInt(10);
+                part.add(i, j, x);
+                ref.merge(((long) i << 32) | j, x, Double::sum);
+            }
+            parts.add(part);
+        }
+        parts.add(new CooData(200, 300));
+
+        for (CooData.ElementOrdering ordering : new CooData.ElementOrdering[]{CooData.ElementOrdering.BY_ROW, CooData.ElementOrdering.BY_COL}) {
+            CooData m = CooData.merge(ordering, parts);
+            assertEquals(ref.size(), m.entries);
+            for (int k = 0; k < m.entries; k++) {
+                assertEquals(ref.get(((long) m.rows[k] << 32) | m.cols[k]), m.values[k], 0);
+                if (k > 0) {
+                    if (ordering == CooData.ElementOrdering.BY_ROW) {
+                        assertTrue(m.rows[k - 1] < m.rows[k] || (m.rows[k - 1] == m.rows[k] && m.cols[k - 1] < m.cols[k]));
+                    } else {
+                        assertTrue(m.cols[k - 1] < m.cols[k] || (m.cols[k - 1] == m.cols[k] && m.rows[k - 1] < m.rows[k]));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void append() {
+        Random rand = new Random(2);
+        for (boolean sorted : new boolean[]{false, true}) {
+            Map<Long, Double> ref = new HashMap<>();
+            CooData a = new CooData(50, 50);
+            CooData b = new CooData(50, 60);
+            for (int step = 0; step < 1000; step++) {
+                int i = rand.nextInt(50);
+                int j = rand.nextInt(50);
+                double x = rand.nextInt(5);
+                (step % 3 == 0 ? a : b).add(i, j, x);
+                ref.merge(((long) i << 32) | j, x, Double::sum);
+            }
+            b.add(3, 55, 1);
+            ref.merge((3L << 32) | 55, 1.0, Double::sum);
+
+            if (sorted) {
+                a.compress(CooData.ElementOrdering.BY_ROW, false);
+                b.compress(CooData.ElementOrdering.BY_ROW, false);
+            }
+            int before = b.entries;
+            a.append(b);
+            assertEquals(before, b.entries);
+            if (sorted) {
+                // merging sorted data leaves it compressed with no duplicates
+                assertEquals(ref.size(), a.entries);
+            }
+
+            SparseMatrix m = a.asSparseMatrix();
+            assertEquals(50, m.nrows());
+            assertEquals(60, m.ncols());
+            assertEquals(ref.size(), m.size());
+            for (Long key : ref.keySet()) {
+                assertEquals(ref.get(key), m.get((int) (key >> 32), (int) (long) key), 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void appendAsCombiner() {
+        CooData m = IntStream.range(0, 100000).parallel()
+                .collect(
+                        () -> new CooData(100, 100),
+                        (CooData mx, int step) -> mx.add(step % 100, (step / 100) % 100, 1),
+                        CooData::append);
+        SparseMatrix mx = m.asSparseMatrix();
+        assertEquals(10000, mx.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(10, mx.get(i, (i * 7) % 100), 0);
+        }
+    }
+
+    @Test
+    public void concurrent() {
+        ConcurrentCooData builder = new ConcurrentCooData(1000, 500);
+        IntStream.range(0, 200000).parallel().forEach(
+                step -> {
+                    Random rand = new Random(step);
+                    builder.add(rand.nextInt(1000), rand.nextInt(500), 1);
+                });
+
+        CooData ref = new CooData(1000, 500);
+        for (int step = 0; step < 200000; step++) {
+            Random rand = new Random(step);
+            ref.add(rand.nextInt(1000), rand.nextInt(500), 1);
+        }
+        ref.compress(CooData.ElementOrdering.BY_COL, false);
+
+        CooData m = builder.merge(CooData.ElementOrdering.BY_COL);
+        assertEquals(ref.entries, m.entries);
+        for (int k = 0; k < m.entries; k++) {
+            assertEquals(ref.rows[k], m.rows[k]);
+            assertEquals(ref.cols[k], m.cols[k]);
+            assertEquals(ref.values[k], m.values[k], 0);
+        }
+
+        SparseMatrix mx = builder.asSparseMatrix();
+        assertEquals(ref.entries, mx.size());
+        assertEquals(ref.values[17], mx.get(ref.rows[17], ref.cols[17]), 0);
+    }
+
+    @Test
+    public void concurrentEmpty() {
+        ConcurrentCooData builder = new ConcurrentCooData(10, 10);
+        CooData empty = builder.merge(CooData.ElementOrdering.BY_ROW);
+        assertEquals(0, empty.entries);
+        assertEquals(0, builder.asSparseMatrix().size());
+
+        // the empty result belongs to the caller, so changing it doesn't change the builder
+        empty.add(1, 1, 5);
+        builder.add(2, 3, 1);
+        CooData m = builder.merge(CooData.ElementOrdering.BY_ROW);
+        assertEquals(1, m.entries);
+        assertEquals(2, m.rows[0]);
+        assertEquals(3, m.cols[0]);
+    }
+
+    @Test
+    public void narrowValues() {
+        Random rand = new Random(4);
+        CooData ref = new CooData(300, 200);
+        FloatCooData f = new FloatCooData(300, 200);
+        IntCooData counts = new IntCooData(300, 200);
+        PatternCooData pattern = new PatternCooData(300, 200);
+        for (int step = 0; step < 20000; step++) {
+            int i = rand.nextInt(300);
+            int j = rand.nextInt(step % 7 == 0 ? 200000 : 200) % 200;
+            int x = rand.nextInt(5) + 1;
+            ref.add(i, j, x);
+            f.add(i, j, x);
+            counts.add(i, j, x);
+            pattern.add(i, j);
+        }
+
+        SparseMatrix m = ref.asSparseMatrix();
+        SparseMatrix mf = f.asSparseMatrix();
+        SparseMatrix mc = counts.asSparseMatrix();
+        SparseMatrix mp = pattern.asSparseMatrix();
+        assertEquals(m.size(), mf.size());
+        assertEquals(m.size(), mc.size());
+        assertEquals(m.size(), mp.size());
+        for (int i = 0; i < 300; i++) {
+            for (int j = 0; j < 200; j++) {
+                double x = m.get(i, j);
+                assertEquals(x, mf.get(i, j), 0);
+                assertEquals(x, mc.get(i, j), 0);
+                assertEquals(x == 0 ? 0 : 1, mp.get(i, j), 0);
+            }
+        }
+
+        CsrMatrix csr = counts.asCsrMatrix();
+        assertEquals(m.size(), csr.size());
+        assertEquals(m.get(17, 23), csr.get(17, 23), 0);
+    }
+
+    @Test
+    public void floatSums() {
+        // adding 1 to 1e8 one at a time in float does nothing at all
+        FloatCooData whole = new FloatCooData(2, 2);
+        List<FloatCooData> parts = new ArrayList<>();
+        for (int p = 0; p < 6; p++) {
+            float x = p == 0 ? 1e8f : 1;
+            whole.add(0, 0, x);
+            FloatCooData part = new FloatCooData(2, 2);
+            part.add(0, 0, x);
+            parts.add(part);
+        }
+        whole.compress(CooData.ElementOrdering.BY_COL, false);
+        FloatCooData merged = FloatCooData.merge(CooData.ElementOrdering.BY_COL, parts);
+        assertEquals(1, merged.entries);
+        assertEquals(100000008f, whole.values[0], 0);
+        assertEquals(whole.values[0], merged.values[0], 0);
+    }
+
+    @Test
+    public void mergeCounts() {
+        Random rand = new Random(5);
+        List<IntCooData> parts = new ArrayList<>();
+        Map<Long, Integer> ref = new HashMap<>();
+        for (int p = 0; p < 4; p++) {
+            IntCooData part = new IntCooData();
+            for (int step = 0; step < 3000; step++) {
+                int i = rand.nextInt(100);
+                int j = rand.nextInt(100);
+                part.add(i, j, 1);
+                ref.merge(((long) i << 32) | j, 1, Integer::sum);
+            }
+            parts.add(part);
+        }
+        IntCooData m = IntCooData.merge(CooData.ElementOrdering.BY_ROW, parts);
+        assertEquals(ref.size(), m.entries);
+        for (int k = 0; k < m.entries; k++) {
+            assertEquals((int) ref.get(((long) m.rows[k] << 32) | m.cols[k]), m.values[k]);
+        }
+
+        PatternCooData a = new PatternCooData();
+        PatternCooData b = new PatternCooData();
+        a.add(1, 2);
+        a.add(3, 4);
+        b.add(1, 2);
+        b.add(5, 6);
+        a.compress(CooData.ElementOrdering.BY_COL, false);
+        b.compress(CooData.ElementOrdering.BY_COL, false);
+        a.append(b);
+        assertEquals(3, a.entries);
+        assertEquals(3, a.asSparseMatrix().size());
+    }
+
     private class Pair implements Comparable<Pair> {
         int i, j;
 
@@ -112,7 +381,7 @@ public class CooDataTest {
 
         @Override
         public int compareTo(Pair other) {
-            int r = this.i - other.j;
+            int r = this.i - other.i;
             if (r == 0) {
                 return this.j - other.j;
             } else {
@@ -0,0 +1,100 @@
+package com.tdunning.examples;
+
+import org.junit.Test;
+import smile.math.matrix.SparseMatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CooccurrenceBuilderTest {
+    @Test
+    public void matchesAta() {
+        Random rand = new Random(1);
+        int terms = 500;
+        List<int[]> docs = new ArrayList<>();
+        for (int d = 0; d < 20000; d++) {
+            int[] doc = new int[1 + rand.nextInt(12)];
+            for (int k = 0; k < doc.length; k++) {
+                // the last few terms never occur
+                doc[k] = (int) Math.min(terms - 10, -terms / 6.0 * Math.log(rand.nextDouble()));
+            }
+            docs.add(doc);
+        }
+
+        CooccurrenceBuilder builder = new CooccurrenceBuilder(terms, 10000);
+        docs.parallelStream().forEach(builder::add);
+        assertEquals(docs.size(), builder.documents());
+
+        // the long way around
+        CooData data = new CooData(docs.size(), terms);
+        for (int d = 0; d < docs.size(); d++) {
+            for (int t : docs.get(d)) {
+                data.add(d, t, 1);
+            }
+        }
+        data.compress(CooData.ElementOrdering.BY_COL, false);
+        for (int k = 0; k < data.entries; k++) {
+            data.values[k] = 1;
+        }
+        SparseMatrix expected = data.asSparseMatrix().ata();
+        SparseMatrix actual = builder.asSparseMatrix();
+
+        assertEquals(terms, actual.nrows());
+        assertEquals(terms, actual.ncols());
+        assertEquals(expected.size(), actual.size());
+        double[] counts = builder.counts();
+        for (int j = 0; j < terms; j++) {
+            assertEquals(expected.get(j, j), counts[j], 0);
+            for (int i = 0; i < terms; i++) {
+                assertEquals(expected.get(i, j), actual.get(i, j), 0);
+            }
+            List<Integer> rows = new ArrayList<>();
+            actual.foreachNonzero(j, j + 1, (i, jx, x) -> rows.add(i));
+            for (int k = 1; k < rows.size(); k++) {
+                assertTrue(rows.get(k - 1) < rows.get(k));
+            }
+        }
+
+        IntCooData upper = builder.upperTriangle();
+        for (int k = 0; k < upper.entries; k++) {
+            assertTrue(upper.rows[k] < upper.cols[k]);
+            assertEquals(expected.get(upper.rows[k], upper.cols[k]), upper.values[k], 0);
+        }
+    }
+
+    @Test
+    public void finished() {
+        // a huge estimate doesn't reserve anything like that much space up front
+        CooccurrenceBuilder builder = new CooccurrenceBuilder(400000, 4_000_000_000L);
+        builder.add(new int[]{1, 5, 399999, 5});
+        builder.add(new int[]{5, 1});
+        IntCooData upper = builder.upperTriangle();
+        assertEquals(3, upper.entries);
+        assertSame(upper, builder.upperTriangle());
+        assertEquals(2, builder.documents());
+        assertEquals(2, builder.counts()[5], 0);
+        assertEquals(2, builder.asSparseMatrix().get(1, 5), 0);
+
+        try {
+            builder.add(new int[]{1, 2});
+            fail("Should have caught add after combining");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("combined"));
+        }
+    }
+
+    @Test
+    public void empty() {
+        CooccurrenceBuilder builder = new CooccurrenceBuilder(10, 0);
+        assertEquals(0, builder.documents());
+        assertEquals(0, builder.asSparseMatrix().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badTerm() {
+        new CooccurrenceBuilder(10, 0).add(new int[]{3, 10});
+    }
+}
@@ -0,0 +1,63 @@
+package com.tdunning.examples;
+
+import org.junit.Test;
+import smile.math.matrix.SparseMatrix;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CsrMatrixTest {
+    @Test
+    public void conversions() {
+        Random rand = new Random(1);
+        CooData data = new CooData(40, 70);
+        for (int step = 0; step < 600; step++) {
+            data.add(rand.nextInt(39), rand.nextInt(69), rand.nextInt(10) + 1);
+        }
+        // row 39 and column 69 stay empty to check the edges
+        data.add(38, 68, 1);
+
+        CsrMatrix csr = data.asCsrMatrix();
+        SparseMatrix csc = data.asSparseMatrix();
+        CsrMatrix copy = CsrMatrix.from(csc);
+
+        assertEquals(40, csr.nrows());
+        assertEquals(70, csr.ncols());
+        assertEquals(csc.size(), csr.size());
+        assertEquals(csc.size(), copy.size());
+        assertEquals(csr.rowStart(39), csr.rowEnd(39));
+        for (int i = 0; i < 40; i++) {
+            for (int k = csr.rowStart(i) + 1; k < csr.rowEnd(i); k++) {
+                assertTrue(csr.column(k - 1) < csr.column(k));
+            }
+            for (int j = 0; j < 70; j++) {
+                assertEquals(csc.get(i, j), csr.get(i, j), 0);
+                assertEquals(csc.get(i, j), copy.get(i, j), 0);
+            }
+        }
+
+        double[] total = new double[1];
+        int[] lastRow = {-1};
+        csr.foreachNonzero((i, j, x) -> {
+            assertTrue(i >= lastRow[0]);
+            lastRow[0] = i;
+            total[0] += x;
+        });
+        double[] ref = new double[1];
+        csc.foreachNonzero((i, j, x) -> ref[0] += x);
+        assertEquals(ref[0], total[0], 0);
+    }
+
+    @Test
+    public void multiply() {
+        CooData data = new CooData(3, 4);
+        data.add(0, 0, 1);
+        data.add(0, 3, 2);
+        data.add(2, 1, 3);
+        data.add(2, 2, 4);
+        CsrMatrix a = data.asCsrMatrix();
+        double[] y = a.ax(new double[]{1, 10, 100, 1000}, new double[3]);
+        assertArrayEquals(new double[]{2001, 0, 430}, y, 0);
+    }
+}
@@ -0,0 +1,145 @@
+package com.tdunning.examples;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class DocumentFileTest {
+    private static final String[] WORDS = {"the", "hotel", "was", "Great", "room", "$10", "@desk", "clean", "a", "b"};
+
+    @Test
+    public void documents() throws IOException {
+        List<String> ref = new ArrayList<>();
+        Path data = sampleFile(2000, ref);
+        try (DocumentFile docs = new DocumentFile(data)) {
+            docs.setChunkSize(1000);
+            assertEquals(ref, docs.documents().map(CharSequence::toString).collect(Collectors.toList()));
+            assertEquals(ref, docs.documents().parallel().map(CharSequence::toString).collect(Collectors.toList()));
+            assertEquals(ref.size(), docs.documents().parallel().count());
+        } finally {
+            Files.delete(data);
+        }
+    }
+
+    @Test
+    public void segments() throws IOException {
+        List<String> ref = new ArrayList<>();
+        Path data = sampleFile(3000, ref);
+        // force lots of small mappings to check that documents never straddle them
+        try (DocumentFile docs = new DocumentFile(data, 2, 4096)) {
+            docs.setChunkSize(10000);
+            assertEquals(ref, docs.documents().map(CharSequence::toString).collect(Collectors.toList()));
+            assertEquals(ref, docs.documents().parallel().map(CharSequence::toString).collect(Collectors.toList()));
+
+            ForkJoinPool pool = new ForkJoinPool(3);
+            TermCounter counts;
+            try {
+                counts = docs.countTerms(pool);
+            } finally {
+                pool.shutdown();
+            }
+            TermCounter expected = new TermCounter();
+            ref.forEach(expected::addDocument);
+            assertEquals(expected.total(), counts.total());
+            assertEquals(expected.count("hotel"), counts.count("hotel"));
+        } finally {
+            Files.delete(data);
+        }
+    }
+
+    @Test
+    public void views() {
+        byte[] bytes = "caf\u00e9\tx".getBytes(StandardCharsets.ISO_8859_1);
+        Latin1CharSequence s = new Latin1CharSequence(ByteBuffer.wrap(bytes), 0, 4);
+        assertEquals(4, s.length());
+        assertEquals('\u00e9', s.charAt(3));
+        assertEquals("caf\u00e9", s.toString());
+        assertEquals("af", s.subSequence(1, 3).toString());
+        assertEquals(Collections.singletonList("caf"), VectorText.tokenizeAsList(s));
+    }
+
+    @Test
+    public void lineStart() throws IOException {
+        Path data = Files.createTempFile("docs", ".tsv");
+        Files.write(data, "a\tb\tc d\n\nx\ty\tzz\n".getBytes(StandardCharsets.ISO_8859_1));
+        try (DocumentFile docs = new DocumentFile(data)) {
+            assertEquals(0, docs.lineStart(0));
+            assertEquals(8, docs.lineStart(1));
+            assertEquals(8, docs.lineStart(8));
+            assertEquals(9, docs.lineStart(9));
+            assertEquals(16, docs.lineStart(10));
+            assertEquals(16, docs.lineStart(16));
+            assertEquals(2, docs.documents().count());
+        } finally {
+            Files.delete(data);
+        }
+    }
+
+    @Test
+    public void countTerms() throws IOException {
+        List<String> ref = new ArrayList<>();
+        Path data = sampleFile(5000, ref);
+        try (DocumentFile docs = new DocumentFile(data)) {
+            docs.setChunkSize(2000);
+            Multiset<String> expected = ref.stream()
+                    .flatMap(VectorText::tokenize)
+                    .collect(Collectors.toCollection(HashMultiset::create));
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            TermCounter counts;
+            try {
+                counts = docs.countTerms(pool);
+            } finally {
+                pool.shutdown();
+            }
+            assertEquals(expected.size(), counts.total());
+            assertEquals(expected.elementSet().size(), counts.size());
+            for (String w : expected.elementSet()) {
+                assertEquals(w, expected.count(w), counts.count(w));
+            }
+
+            TermDictionary dict = counts.dictionary(100);
+            for (String w : expected.elementSet()) {
+                assertEquals(expected.count(w) >= 100, dict.contains(w));
+            }
+        } finally {
+            Files.delete(data);
+        }
+    }
+
+    private Path sampleFile(int lines, List<String> docs) throws IOException {
+        Random rand = new Random(1);
+        File f = File.createTempFile("docs", ".tsv");
+        try (PrintWriter out = new PrintWriter(f, "ISO-8859-1")) {
+            for (int i = 0; i < lines; i++) {
+                StringBuilder doc = new StringBuilder();
+                int n = rand.nextInt(30);
+                for (int j = 0; j < n; j++) {
+                    doc.append(WORDS[rand.nextInt(WORDS.length)]).append(j % 7 == 6 ? "\t" : " ");
+                    if (rand.nextDouble() < 0.01) {
+                        doc.append("w").append(rand.nextInt(1000)).append(' ');
+                    }
+                }
+                docs.add(doc.toString());
+                out.printf("2019-10-%02d\ttitle %d\t%s\n", i % 30 + 1, i, doc);
+            }
+        }
+        return f.toPath();
+    }
+}
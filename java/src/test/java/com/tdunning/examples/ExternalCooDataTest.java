@@ -0,0 +1,104 @@
+package com.tdunning.examples;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import smile.math.matrix.SparseMatrix;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ExternalCooDataTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void spills() throws IOException {
+        Random rand = new Random(1);
+        CooData ref = new CooData(300, 200);
+        File dir = tmp.newFolder();
+        try (ExternalCooData m = new ExternalCooData(300, 200, 32 * 1000, dir.toPath())) {
+            for (int step = 0; step < 50000; step++) {
+                int i = rand.nextInt(300);
+                int j = rand.nextInt(200);
+                double x = rand.nextInt(10);
+                m.add(i, j, x);
+                ref.add(i, j, x);
+            }
+            assertTrue(m.runs() > 5);
+            assertEquals(m.runs(), dir.list().length);
+
+            ref.compress(CooData.ElementOrdering.BY_COL, false);
+            int[] k = {0};
+            m.forEachEntry((i, j, x) -> {
+                assertEquals(ref.rows[k[0]], i);
+                assertEquals(ref.cols[k[0]], j);
+                assertEquals(ref.values[k[0]], x, 0);
+                k[0]++;
+            });
+            assertEquals(ref.entries, k[0]);
+
+            SparseMatrix mx = m.asSparseMatrix();
+            SparseMatrix refMx = ref.asSparseMatrix();
+            assertEquals(300, mx.nrows());
+            assertEquals(200, mx.ncols());
+            assertEquals(refMx.size(), mx.size());
+            for (int i = 0; i < 300; i++) {
+                for (int j = 0; j < 200; j++) {
+                    assertEquals(refMx.get(i, j), mx.get(i, j), 0);
+                }
+            }
+        }
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void byRow() throws IOException {
+        Random rand = new Random(2);
+        CooData ref = new CooData();
+        try (ExternalCooData m = new ExternalCooData(-1, -1, 32 * 500, tmp.newFolder().toPath(), CooData.ElementOrdering.BY_ROW)) {
+            for (int step = 0; step < 20000; step++) {
+                int i = rand.nextInt(100);
+                int j = rand.nextInt(1000);
+                m.add(i, j, 1);
+                ref.add(i, j, 1);
+            }
+            assertTrue(m.runs() > 0);
+
+            CsrMatrix csr = m.asCsrMatrix();
+            CsrMatrix refCsr = ref.asCsrMatrix();
+            assertEquals(refCsr.nrows(), csr.nrows());
+            assertEquals(refCsr.ncols(), csr.ncols());
+            assertEquals(refCsr.size(), csr.size());
+            for (int k = 0; k < csr.size(); k++) {
+                assertEquals(refCsr.column(k), csr.column(k));
+                assertEquals(refCsr.value(k), csr.value(k), 0);
+            }
+
+            try {
+                m.asSparseMatrix();
+                fail("Should have complained about the ordering");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void inMemory() throws IOException {
+        try (ExternalCooData m = new ExternalCooData(5, 7, 1 << 20, tmp.newFolder().toPath())) {
+            m.add(1, 2, 3);
+            m.add(4, 6, 1);
+            m.add(1, 2, 1);
+            assertEquals(0, m.runs());
+            SparseMatrix mx = m.asSparseMatrix();
+            assertEquals(2, mx.size());
+            assertEquals(4, mx.get(1, 2), 0);
+            assertEquals(1, mx.get(4, 6), 0);
+            assertEquals(0, mx.get(0, 0), 0);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.tdunning.examples;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HashingVectorizerTest {
+    @Test
+    public void oneHot() {
+        HashingVectorizer h = new HashingVectorizer(1000);
+        SparseVector v = h.count("The cat saw the other cat, then THE dog", new SparseVector());
+        SparseVector the = h.encode("the", new SparseVector());
+        assertEquals(1, the.size());
+        assertEquals(3, v.get(the.index(0)));
+        assertEquals(2, v.get(h.encode("Cat", new SparseVector()).index(0)));
+
+        SparseVector binary = h.vectorize("The cat saw the other cat, then THE dog", new SparseVector());
+        assertEquals(1, binary.get(the.index(0)));
+        int total = 0;
+        for (int k = 0; k < binary.size(); k++) {
+            total += binary.value(k);
+            assertTrue(binary.index(k) >= 0 && binary.index(k) < 1000);
+            if (k > 0) {
+                assertTrue(binary.index(k - 1) < binary.index(k));
+            }
+        }
+        // six distinct words, and with this seed none of them collide
+        assertEquals(6, total);
+    }
+
+    @Test
+    public void probes() {
+        HashingVectorizer h = new HashingVectorizer(100000, 5, true, 1);
+        SparseVector v = h.encode("hotel", new SparseVector());
+        assertEquals(5, v.size());
+        for (int k = 0; k < v.size(); k++) {
+            assertEquals(1, Math.abs(v.value(k)));
+        }
+
+        // the same term always hashes the same way, but a different seed gives a different code
+        SparseVector doc = h.count("hotel HOTEL", new SparseVector());
+        for (int k = 0; k < v.size(); k++) {
+            assertEquals(2 * v.value(k), doc.get(v.index(k)));
+        }
+        SparseVector other = new HashingVectorizer(100000, 5, true, 2).encode("hotel", new SparseVector());
+        int same = 0;
+        for (int k = 0; k < other.size(); k++) {
+            same += v.get(other.index(k)) != 0 ? 1 : 0;
+        }
+        assertTrue(same < 5);
+    }
+
+    @Test
+    public void signsAreBalanced() {
+        // with signed hashing the inner product of codes for different terms should average to zero
+        Random rand = new Random(1);
+        HashingVectorizer h = new HashingVectorizer(50, 3, true, 0);
+        int positive = 0;
+        int negative = 0;
+        long dot = 0;
+        SparseVector a = new SparseVector();
+        SparseVector b = new SparseVector();
+        for (int i = 0; i < 2000; i++) {
+            h.encode("a" + rand.nextInt(), a);
+            h.encode("b" + rand.nextInt(), b);
+            for (int k = 0; k < a.size(); k++) {
+                if (a.value(k) > 0) {
+                    positive++;
+                } else {
+                    negative++;
+                }
+                dot += a.value(k) * b.get(a.index(k));
+            }
+        }
+        assertEquals(0.5, positive / (double) (positive + negative), 0.03);
+        assertEquals(0, dot / 2000.0, 0.1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badProbes() {
+        new HashingVectorizer(10, 11, false, 0);
+    }
+}
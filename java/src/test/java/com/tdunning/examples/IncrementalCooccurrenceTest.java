@@ -0,0 +1,134 @@
+package com.tdunning.examples;
+
+import org.junit.Test;
+import smile.math.matrix.SparseMatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IncrementalCooccurrenceTest {
+    private static final int TERMS = 200;
+
+    @Test
+    public void matchesBatch() {
+        Random rand = new Random(1);
+        IncrementalCooccurrence model = new IncrementalCooccurrence(2, 5);
+        List<int[]> docs = new ArrayList<>();
+
+        for (int d = 0; d < 3000; d++) {
+            int[] doc = document(rand, TERMS);
+            docs.add(doc);
+            model.add(doc);
+        }
+        assertTrue(model.pending() > 0);
+        model.refresh();
+        assertEquals(0, model.pending());
+        assertEquals(3000, model.documents());
+        compare(docs, model, null);
+
+        // new documents that only use the first few terms
+        SparseMatrix before = model.scores();
+        boolean[] touched = new boolean[TERMS];
+        int changed = 0;
+        for (int d = 0; d < 500; d++) {
+            int[] doc = document(rand, 20);
+            docs.add(doc);
+            model.add(doc);
+            for (int t : doc) {
+                if (!touched[t]) {
+                    touched[t] = true;
+                    changed++;
+                }
+            }
+        }
+        assertEquals(changed, model.refresh());
+        compare(docs, model, touched);
+
+        // terms that weren't touched keep their old scores
+        SparseMatrix after = model.scores();
+        for (int j = 0; j < TERMS; j++) {
+            if (!touched[j]) {
+                for (int i = 0; i < TERMS; i++) {
+                    assertEquals(before.get(i, j), after.get(i, j), 0);
+                }
+            }
+        }
+
+        model.refreshAll();
+        compare(docs, model, null);
+    }
+
+    @Test
+    public void text() {
+        TermDictionary dictionary = new TermDictionary();
+        IncrementalCooccurrence model = new IncrementalCooccurrence(0, 10);
+        model.add(dictionary, "the cat sat on the mat");
+        model.add(dictionary, "The dog sat");
+        assertEquals(2, model.documents());
+        assertEquals(2, model.count(dictionary.get("sat")));
+        assertEquals(2, model.count(dictionary.get("the")));
+        assertEquals(2, model.count(dictionary.get("the"), dictionary.get("sat")));
+        assertEquals(0, model.count(dictionary.get("cat"), dictionary.get("dog")));
+    }
+
+    /**
+     * Checks the model against counts and associates computed from scratch. If touched isn't null,
+     * only those columns are checked.
+     */
+    private void compare(List<int[]> docs, IncrementalCooccurrence model, boolean[] touched) {
+        CooData data = new CooData(docs.size(), TERMS);
+        for (int d = 0; d < docs.size(); d++) {
+            for (int t : docs.get(d)) {
+                data.add(d, t, 1);
+            }
+        }
+        data.compress(CooData.ElementOrdering.BY_COL, false);
+        for (int k = 0; k < data.entries; k++) {
+            data.values[k] = 1;
+        }
+        SparseMatrix docByTerms = data.asSparseMatrix();
+        double[] counts = new double[TERMS];
+        docByTerms.foreachNonzero((d, t, x) -> counts[t]++);
+        SparseMatrix cooc = docByTerms.ata();
+        SparseMatrix expected = new Associates(2, 5).scores(cooc, counts, docs.size());
+        SparseMatrix actual = model.scores();
+
+        for (int j = 0; j < TERMS; j++) {
+            assertEquals(counts[j], model.count(j), 0);
+            if (touched == null || touched[j]) {
+                for (int i = 0; i < TERMS; i++) {
+                    if (i != j) {
+                        assertEquals(cooc.get(i, j), model.count(i, j), 0);
+                    }
+                }
+                // ties can be broken either way so compare the scores kept, not which terms have them
+                assertArrayEquals(column(expected, j), column(actual, j), 1e-9);
+                int word = j;
+                double n = docs.size();
+                actual.foreachNonzero(j, j + 1, (i, jx, x) -> {
+                    double k11 = cooc.get(i, word);
+                    assertEquals(Associates.llr(k11, counts[i] - k11, counts[word] - k11, n - counts[i] - counts[word] + k11), x, 1e-9);
+                });
+            }
+        }
+    }
+
+    private double[] column(SparseMatrix m, int j) {
+        List<Double> r = new ArrayList<>();
+        m.foreachNonzero(j, j + 1, (i, jx, x) -> r.add(x));
+        return r.stream().mapToDouble(x -> x).sorted().toArray();
+    }
+
+    private int[] document(Random rand, int terms) {
+        int[] doc = new int[5 + rand.nextInt(5)];
+        for (int k = 0; k < doc.length; k++) {
+            int t = (int) Math.min(terms - 1, -terms / 8.0 * Math.log(rand.nextDouble()));
+            // odd terms tend to follow the even term before them
+            doc[k] = k > 0 && doc[k - 1] % 2 == 0 && rand.nextDouble() < 0.5 ? doc[k - 1] + 1 : t;
+        }
+        return doc;
+    }
+}
@@ -3,6 +3,10 @@ package com.tdunning.examples;
 import org.junit.Test;
 import smile.math.matrix.SparseMatrix;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.Assert.*;
 
 public class JacobiTest {
@@ -47,6 +51,98 @@ public class JacobiTest {
 
     }
 
+    @Test
+    public void monitor() {
+        // diagonally dominant so Jacobi is guaranteed to converge
+        Random rand = new Random(1);
+        int n = 10000;
+        CooData data = new CooData(n, n);
+        for (int i = 0; i < n; i++) {
+            double sum = 0;
+            for (int k = 0; k < 5; k++) {
+                double w = rand.nextDouble();
+                data.add(i, rand.nextInt(n), w);
+                sum += w;
+            }
+            data.add(i, i, 2 * sum + 1);
+        }
+        SparseMatrix a = data.asSparseMatrix();
+        double[] x0 = new double[n];
+        for (int i = 0; i < n; i++) {
+            x0[i] = rand.nextGaussian();
+        }
+        double[] b = new double[n];
+        a.ax(x0, b);
+
+        List<double[]> history = new ArrayList<>();
+        double[] x = new Jacobi(a).solve(b, 1e-12, 1000, (iteration, change, residual, nanos) -> {
+            assertEquals(history.size() + 1, iteration);
+            assertTrue(nanos >= 0);
+            history.add(new double[]{change, residual});
+        });
+
+        assertTrue(history.size() > 5);
+        assertTrue(history.size() < 1000);
+        assertTrue(history.get(history.size() - 1)[0] <= 1e-12);
+        for (int k = 1; k < history.size(); k++) {
+            assertTrue(history.get(k)[1] < history.get(k - 1)[1]);
+        }
+        for (int i = 0; i < n; i++) {
+            assertEquals(x0[i], x[i], 1e-9);
+        }
+    }
+
+    @Test
+    public void batch() {
+        Random rand = new Random(2);
+        int n = 5000;
+        CooData data = new CooData(n, n);
+        for (int i = 0; i < n; i++) {
+            double sum = 0;
+            for (int k = 0; k < 4; k++) {
+                double w = rand.nextDouble();
+                data.add(i, rand.nextInt(n), w);
+                sum += w;
+            }
+            data.add(i, i, 1.5 * sum + 0.01);
+        }
+        Jacobi solver = new Jacobi(data.asSparseMatrix());
+
+        // right hand sides that converge at very different points, including immediately,
+        // and enough of them to need full groups as well as a partial one
+        double[][] b = new double[19][n];
+        for (int c = 0; c < b.length; c++) {
+            double scale = Math.pow(10, c % 7 - 3);
+            for (int i = 0; i < n; i++) {
+                b[c][i] = c == 2 ? 0 : scale * rand.nextGaussian();
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            b[3][i] = i % 100 == 0 ? 1 : 0;
+        }
+
+        int[] sweeps = {0};
+        double[][] x = solver.solve(b, 1e-10, 10000, (iteration, change, residual, nanos) -> sweeps[0] = iteration);
+        assertEquals(19, x.length);
+        int slowest = 0;
+        for (int c = 0; c < b.length; c++) {
+            int[] count = {0};
+            double[] ref = solver.solve(b[c], 1e-10, 10000, (iteration, change, residual, nanos) -> count[0] = iteration);
+            slowest = Math.max(slowest, count[0]);
+            assertArrayEquals(ref, x[c], 0);
+        }
+        assertEquals(slowest, sweeps[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroDiagonal() {
+        CooData data = new CooData(2, 2);
+        data.add(0, 0, 1);
+        data.add(0, 1, 1);
+        data.add(1, 0, 1);
+        new Jacobi(data.asSparseMatrix());
+    }
+
     private int coord(int i, int j) {
         return 100 * i + j;
     }
@@ -0,0 +1,92 @@
+package com.tdunning.examples;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LshIndexTest {
+    @Test
+    public void findsNearNeighbors() {
+        Random rand = new Random(3);
+        int rows = 20000;
+        int dimension = 32;
+        float[] vectors = NearestNeighborsTest.randomMatrix(rand, rows, dimension);
+        normalize(vectors, dimension);
+        NearestNeighbors nn = new NearestNeighbors(vectors, rows, dimension);
+        LshIndex index = new LshIndex(nn, 8, 12, 1);
+
+        // queries are rows with a bit of noise so that each one has a clear nearest neighbor
+        int found = 0;
+        int scanned = 0;
+        int queries = 200;
+        float[][] batch = new float[queries][];
+        for (int q = 0; q < queries; q++) {
+            int target = rand.nextInt(rows);
+            float[] query = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                query[i] = vectors[target * dimension + i] + 0.05f * (float) rand.nextGaussian();
+            }
+            batch[q] = query;
+
+            TopK approximate = index.search(query, 5);
+            TopK best = nn.search(query, 1);
+            assertEquals(target, best.id(0));
+            if (approximate.size() > 0 && approximate.id(0) == target) {
+                found++;
+                assertEquals(best.score(0), approximate.score(0), 1e-6);
+            }
+            // scores are exact even when the result is approximate
+            for (int k = 0; k < approximate.size(); k++) {
+                assertEquals(nn.score(approximate.id(k), query), approximate.score(k), 0);
+                if (k > 0) {
+                    assertTrue(approximate.score(k - 1) >= approximate.score(k));
+                }
+            }
+            scanned += index.candidates(query);
+        }
+        assertTrue(found >= 0.95 * queries);
+        // only a small part of the matrix is looked at
+        assertTrue(scanned < 0.05 * queries * rows);
+
+        TopK[] results = index.search(batch, 5);
+        for (int q = 0; q < queries; q++) {
+            TopK single = index.search(batch[q], 5);
+            assertEquals(single.size(), results[q].size());
+            for (int k = 0; k < single.size(); k++) {
+                assertEquals(single.id(k), results[q].id(k));
+            }
+        }
+    }
+
+    @Test
+    public void badArguments() {
+        NearestNeighbors nn = new NearestNeighbors(new float[]{1, 0, 0, 1}, 2, 2);
+        try {
+            new LshIndex(nn, 0, 4, 1);
+            fail("Should have caught no tables");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("table"));
+        }
+        try {
+            new LshIndex(nn, 2, 21, 1);
+            fail("Should have caught too many bits");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("bits"));
+        }
+    }
+
+    private static void normalize(float[] vectors, int dimension) {
+        for (int offset = 0; offset < vectors.length; offset += dimension) {
+            double sum = 0;
+            for (int i = 0; i < dimension; i++) {
+                sum += vectors[offset + i] * vectors[offset + i];
+            }
+            float scale = (float) (1 / Math.sqrt(sum));
+            for (int i = 0; i < dimension; i++) {
+                vectors[offset + i] *= scale;
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.tdunning.examples;
+
+import org.junit.Test;
+import smile.math.matrix.SparseMatrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LuduanTest {
+    private static final String[][] TOPICS = {
+            {"pool", "swim", "towel", "sauna"},
+            {"train", "station", "rail", "platform"},
+            {"breakfast", "coffee", "eggs", "toast"}
+    };
+
+    @Test
+    public void topics() {
+        List<String> corpus = corpus(new Random(1), 2000);
+        Luduan luduan = new LuduanTrainer(5, 1e9, 30, 5).train(corpus::stream);
+        TermDictionary dictionary = luduan.dictionary();
+
+        // words from the same topic indicate each other and nothing else does
+        for (String[] topic : TOPICS) {
+            for (String w : topic) {
+                int[] indicated = luduan.indicatorFor(dictionary.get(w));
+                assertEquals(topic.length - 1, indicated.length);
+                for (int j : indicated) {
+                    assertTrue(Arrays.asList(topic).contains(dictionary.term(j)));
+                    assertNotEquals(w, dictionary.term(j));
+                }
+            }
+        }
+
+        SparseVector features = luduan.features("A long swim in the POOL, then a sauna and coffee.", new SparseVector());
+        assertEquals(3, features.get(dictionary.get("towel")));
+        assertEquals(2, features.get(dictionary.get("swim")));
+        assertEquals(2, features.get(dictionary.get("sauna")));
+        assertEquals(0, features.get(dictionary.get("coffee")));
+        assertEquals(1, features.get(dictionary.get("toast")));
+        assertEquals(0, features.get(dictionary.get("rail")));
+        assertEquals(0, features.get(dictionary.get("the")));
+
+        // repeated terms and unknown terms make no difference
+        SparseVector again = luduan.features("pool pool swim sauna coffee coffee zebra", new SparseVector());
+        assertArrayEquals(features.toDense(luduan.size()), again.toDense(luduan.size()));
+
+        luduan.features("", features);
+        assertEquals(0, features.size());
+    }
+
+    @Test
+    public void matchesMatrixProduct() {
+        Random rand = new Random(2);
+        List<String> corpus = corpus(rand, 3000);
+        Luduan luduan = new LuduanTrainer(3, 1e9, 2, 10).train(corpus::stream);
+        TermDictionary dictionary = luduan.dictionary();
+        int n = dictionary.size();
+
+        // the same steps done the slow way with a document by term matrix
+        CooData data = new CooData(corpus.size(), n);
+        for (int d = 0; d < corpus.size(); d++) {
+            SparseVector v = VectorText.vectorize(dictionary, corpus.get(d), new SparseVector());
+            for (int k = 0; k < v.size(); k++) {
+                data.add(d, v.index(k), 1);
+            }
+        }
+        data.compress(CooData.ElementOrdering.BY_COL, false);
+        SparseMatrix docByTerms = data.asSparseMatrix();
+        double[] counts = new double[n];
+        docByTerms.foreachNonzero((d, t, x) -> counts[t]++);
+        SparseMatrix indicators = new Associates(2, 10).indicators(docByTerms.ata(), counts, corpus.size());
+
+        SparseVector features = new SparseVector();
+        for (int d = 0; d < 100; d++) {
+            int[] terms = VectorText.vectorize(dictionary, corpus.get(d));
+            int[] expected = new int[n];
+            indicators.foreachNonzero((i, j, x) -> expected[j] += terms[i]);
+            assertArrayEquals(expected, luduan.features(corpus.get(d), features).toDense(n));
+        }
+
+        // the same with term ids instead of text
+        int[] ids = {dictionary.get("pool"), dictionary.get("rail"), dictionary.get("pool")};
+        int[] expected = new int[n];
+        indicators.foreachNonzero((i, j, x) -> {
+            if (i == ids[0] || i == ids[1]) {
+                expected[j]++;
+            }
+        });
+        assertArrayEquals(expected, luduan.features(ids, ids.length, features).toDense(n));
+    }
+
+    @Test
+    public void downsampling() {
+        List<String> corpus = corpus(new Random(3), 2000);
+        // "the" is in every document, so it is cut down to about 1000 occurrences while the topic words
+        // are rare enough to be left alone
+        Luduan luduan = new LuduanTrainer(5, 1000, 30, 5).train(corpus::stream);
+        TermDictionary dictionary = luduan.dictionary();
+        assertEquals(0, luduan.indicatorFor(dictionary.get("the")).length);
+        for (String[] topic : TOPICS) {
+            for (String w : topic) {
+                assertEquals(topic.length - 1, luduan.indicatorFor(dictionary.get(w)).length);
+            }
+        }
+    }
+
+    @Test
+    public void largeVocabulary() {
+        // 300,000 terms that each occur in two documents, with room for lots of associates. Sizing the
+        // pair counts from the vocabulary instead of the corpus would need gigabytes here.
+        List<String> corpus = new ArrayList<>();
+        for (int d = 0; d < 30000; d++) {
+            StringBuilder doc = new StringBuilder();
+            for (int k = 0; k < 10; k++) {
+                doc.append(" w").append(10 * d + k);
+            }
+            corpus.add(doc.toString());
+            corpus.add(doc.toString());
+        }
+        Luduan luduan = new LuduanTrainer(2, 1e9, 0, 1000).train(corpus::stream);
+        assertEquals(300000, luduan.size());
+        TermDictionary dictionary = luduan.dictionary();
+        int[] indicated = luduan.indicatorFor(dictionary.get("w12345"));
+        assertEquals(9, indicated.length);
+        for (int j : indicated) {
+            assertTrue(dictionary.term(j).startsWith("w1234"));
+        }
+    }
+
+    @Test
+    public void fewFeatures() {
+        // a large dictionary where each term is indicated by the next two
+        int n = 1000;
+        TermDictionary dictionary = new TermDictionary();
+        for (int i = 0; i < n; i++) {
+            dictionary.add("t" + i);
+        }
+        int[] colIndex = new int[n + 1];
+        int[] rowIndex = new int[2 * n];
+        for (int j = 0; j < n; j++) {
+            colIndex[j + 1] = 2 * (j + 1);
+            int a = (j + 1) % n;
+            int b = (j + 2) % n;
+            rowIndex[2 * j] = Math.min(a, b);
+            rowIndex[2 * j + 1] = Math.max(a, b);
+        }
+        double[] x = new double[2 * n];
+        Arrays.fill(x, 1);
+        Luduan luduan = new Luduan(dictionary.freeze(), new SparseMatrix(n, n, x, rowIndex, colIndex));
+        assertArrayEquals(new int[]{998, 999}, luduan.indicatorFor(0));
+
+        SparseVector features = luduan.features("t6 t5 t6 t0", new SparseVector());
+        assertEquals(5, features.size());
+        int[] expected = {3, 4, 5, 998, 999};
+        int[] values = {1, 2, 1, 1, 1};
+        for (int k = 0; k < features.size(); k++) {
+            assertEquals(expected[k], features.index(k));
+            assertEquals(values[k], features.value(k));
+        }
+
+        // nothing is left over from the previous document
+        features = luduan.features("t1", features);
+        assertEquals(2, features.size());
+        assertEquals(0, features.index(0));
+        assertEquals(999, features.index(1));
+    }
+
+    @Test
+    public void badArguments() {
+        try {
+            new LuduanTrainer(0, 100, 10, 5);
+            fail("Should have caught bad count");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("count"));
+        }
+        try {
+            new LuduanTrainer(5, 100, 10, 5).train(() -> Arrays.asList("a b", "c d").stream());
+            fail("Should have caught empty dictionary");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("at least 5"));
+        }
+        try {
+            new Luduan(new TermDictionary(), new SparseMatrix(2, 2, new double[0], new int[0], new int[3]));
+            fail("Should have caught mismatched dictionary");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("0 x 0"));
+        }
+    }
+
+    /**
+     * Documents that each mix a few words from one topic with common filler words.
+     */
+    private List<String> corpus(Random rand, int n) {
+        String[] filler = {"the", "a", "and", "was", "very", "nice", "room", "hotel", "stay", "staff", "good", "bad"};
+        List<String> r = new ArrayList<>();
+        for (int d = 0; d < n; d++) {
+            String[] topic = TOPICS[rand.nextInt(TOPICS.length)];
+            StringBuilder doc = new StringBuilder("the");
+            for (int k = 0; k < 8; k++) {
+                doc.append(' ');
+                doc.append(rand.nextDouble() < 0.3 ? topic[rand.nextInt(topic.length)] : filler[rand.nextInt(filler.length)]);
+            }
+            r.add(doc.toString());
+        }
+        return r;
+    }
+}
@@ -0,0 +1,136 @@
+package com.tdunning.examples;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class NearestNeighborsTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void search() {
+        Random rand = new Random(1);
+        int rows = 5000;
+        int dimension = 37;
+        float[] vectors = randomMatrix(rand, rows, dimension);
+        NearestNeighbors nn = new NearestNeighbors(vectors, rows, dimension);
+        assertEquals(rows, nn.size());
+        assertEquals(dimension, nn.dimension());
+
+        for (int trial = 0; trial < 10; trial++) {
+            float[] query = randomMatrix(rand, 1, dimension);
+            TopK top = nn.search(query, 20);
+            check(vectors, rows, dimension, query, top, 20);
+        }
+    }
+
+    @Test
+    public void batch() {
+        Random rand = new Random(2);
+        int rows = 3000;
+        // not a multiple of four so that the tail of the dot product is used
+        int dimension = 19;
+        float[] vectors = randomMatrix(rand, rows, dimension);
+        NearestNeighbors nn = new NearestNeighbors(vectors, rows, dimension);
+
+        // more queries than fit in one group
+        float[][] queries = new float[100][];
+        for (int q = 0; q < queries.length; q++) {
+            queries[q] = randomMatrix(rand, 1, dimension);
+        }
+        TopK[] results = nn.search(queries, 5);
+        assertEquals(queries.length, results.length);
+        for (int q = 0; q < queries.length; q++) {
+            check(vectors, rows, dimension, queries[q], results[q], 5);
+            TopK single = nn.search(queries[q], 5);
+            // batched scores are computed in the same order as single ones so they match exactly
+            for (int k = 0; k < 5; k++) {
+                assertEquals(single.id(k), results[q].id(k));
+                assertEquals(single.score(k), results[q].score(k), 0);
+            }
+        }
+    }
+
+    @Test
+    public void fewRows() {
+        float[] vectors = {1, 0, 0, 1, 1, 1};
+        NearestNeighbors nn = new NearestNeighbors(vectors, 3, 2);
+        TopK top = nn.search(new float[]{2, 1}, 10);
+        assertEquals(3, top.size());
+        assertEquals(2, top.id(0));
+        assertEquals(3, top.score(0), 0);
+        assertEquals(0, top.id(1));
+        assertEquals(1, top.id(2));
+
+        try {
+            nn.search(new float[]{1}, 3);
+            fail("Should have caught short query");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("dimension 2"));
+        }
+        try {
+            new NearestNeighbors(vectors, 4, 2);
+            fail("Should have caught short matrix");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("4 rows"));
+        }
+    }
+
+    @Test
+    public void wordVectors() throws IOException {
+        Path text = tmp.newFile("vectors.txt").toPath();
+        Files.write(text, Arrays.asList("a 1 0 0", "b 0 1 0", "c 0.9 0.1 0", "d 0 0 1"), StandardCharsets.UTF_8);
+        Path binary = tmp.newFile("vectors.bin").toPath();
+        WordVectors.convert(text, binary);
+        WordVectors table = WordVectors.open(binary);
+        NearestNeighbors nn = NearestNeighbors.from(table);
+
+        float[] query = table.vector(table.row("a"), new float[3]);
+        TopK top = nn.search(query, 2);
+        assertEquals("a", table.term(top.id(0)));
+        assertEquals("c", table.term(top.id(1)));
+    }
+
+    /**
+     * Checks a search result against sorting all of the rows by score.
+     */
+    private void check(float[] vectors, int rows, int dimension, float[] query, TopK top, int k) {
+        double[] scores = new double[rows];
+        for (int row = 0; row < rows; row++) {
+            double sum = 0;
+            for (int i = 0; i < dimension; i++) {
+                sum += vectors[row * dimension + i] * query[i];
+            }
+            scores[row] = sum;
+        }
+        int[] order = IntStream.range(0, rows).boxed()
+                .sorted(Comparator.comparingDouble(row -> -scores[row]))
+                .mapToInt(row -> row)
+                .toArray();
+        assertEquals(k, top.size());
+        for (int j = 0; j < k; j++) {
+            assertEquals(scores[order[j]], top.score(j), 1e-4);
+            assertEquals(scores[top.id(j)], top.score(j), 1e-4);
+        }
+    }
+
+    static float[] randomMatrix(Random rand, int rows, int dimension) {
+        float[] r = new float[rows * dimension];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = (float) rand.nextGaussian();
+        }
+        return r;
+    }
+}
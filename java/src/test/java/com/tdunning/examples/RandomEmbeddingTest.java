@@ -0,0 +1,84 @@
+package com.tdunning.examples;
+
+import org.junit.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class RandomEmbeddingTest {
+    @Test
+    public void unitVectors() {
+        RandomEmbedding e = new RandomEmbedding(200, 1);
+        float[] hotel = e.vector("hotel");
+        assertEquals(200, hotel.length);
+        assertEquals(1, dot(hotel, hotel), 1e-5);
+        assertArrayEquals(hotel, e.vector("Hotel"), 0);
+        assertArrayEquals(hotel, new RandomEmbedding(200, 1, 100).vector("HOTEL"), 0);
+
+        // different seeds and different terms give nearly orthogonal vectors
+        assertEquals(0, dot(hotel, new RandomEmbedding(200, 2).vector("hotel")), 0.3);
+        double mean = 0;
+        double max = 0;
+        for (int i = 0; i < 1000; i++) {
+            double cos = dot(e.vector("a" + i), e.vector("b" + i));
+            mean += cos * cos;
+            max = Math.max(max, Math.abs(cos));
+        }
+        // cosines should be about 1/sqrt(200) in magnitude
+        assertEquals(1.0 / 200, mean / 1000, 0.001);
+        assertTrue(max < 0.35);
+    }
+
+    @Test
+    public void embed() {
+        String doc = "the cat saw the dog";
+        for (int cacheSize : new int[]{0, 2, 100}) {
+            RandomEmbedding e = new RandomEmbedding(51, 3, cacheSize);
+            float[] expected = new float[51];
+            for (String w : new String[]{"the", "cat", "saw", "the", "dog"}) {
+                float[] v = e.vector(w);
+                for (int i = 0; i < 51; i++) {
+                    expected[i] += v[i];
+                }
+            }
+            float[] result = new float[51];
+            result[7] = 100;
+            assertArrayEquals(expected, e.embed(doc, result), 1e-6f);
+            assertArrayEquals(expected, e.embed(doc, result), 1e-6f);
+
+            float[] weighted = new float[51];
+            e.add(doc, 4, 7, 2.5f, weighted);
+            float[] cat = e.vector("cat");
+            for (int i = 0; i < 51; i++) {
+                assertEquals(2.5f * cat[i], weighted[i], 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    public void sharedCache() {
+        // far more terms than slots, looked up from several threads, so slots are replaced constantly
+        RandomEmbedding plain = new RandomEmbedding(30, 4);
+        RandomEmbedding cached = new RandomEmbedding(30, 4, 10);
+        IntStream.range(0, 20000).parallel().forEach(i -> {
+            String term = "t" + (i % 100);
+            assertArrayEquals(plain.vector(term), cached.vector(term), 0);
+        });
+
+        try {
+            new RandomEmbedding(30, 4, -1);
+            fail("Should have caught bad cache size");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("Cache size"));
+        }
+    }
+
+    private double dot(float[] a, float[] b) {
+        double r = 0;
+        for (int i = 0; i < a.length; i++) {
+            r += a[i] * b[i];
+        }
+        return r;
+    }
+}
@@ -0,0 +1,121 @@
+package com.tdunning.examples;
+
+import org.junit.Test;
+import smile.math.matrix.SparseMatrix;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SolverTest {
+    private static final int SIZE = 60;
+
+    @Test
+    public void fewerSweeps() {
+        SparseMatrix a = mesh();
+        double[] b = rhs(a);
+
+        int jacobi = sweeps(new Jacobi(a), b);
+        int gaussSeidel = sweeps(new GaussSeidel(a), b);
+        int sor = sweeps(new GaussSeidel(a, 1.9, false), b);
+        int redBlack = sweeps(new GaussSeidel(a, 1.9, true), b);
+        int cg = sweeps(new ConjugateGradient(a), b);
+        System.out.printf("jacobi=%d, gauss-seidel=%d, sor=%d, multicolor sor=%d, cg=%d\n", jacobi, gaussSeidel, sor, redBlack, cg);
+
+        assertTrue(gaussSeidel < jacobi);
+        assertTrue(sor < gaussSeidel / 5);
+        assertTrue(redBlack < gaussSeidel / 5);
+        assertTrue(cg < sor);
+    }
+
+    @Test
+    public void csrInput() {
+        SparseMatrix a = mesh();
+        CsrMatrix csr = CsrMatrix.from(a);
+        double[] b = rhs(a);
+        double[] x1 = new ConjugateGradient(a).solve(b, 1e-12, 10000);
+        double[] x2 = new ConjugateGradient(csr).solve(b, 1e-12, 10000);
+        double[] x3 = new GaussSeidel(csr, 1.5, true).solve(b, 1e-12, 10000);
+        for (int i = 0; i < x1.length; i++) {
+            assertEquals(x1[i], x2[i], 0);
+            assertEquals(x1[i], x3[i], 1e-9);
+        }
+    }
+
+    @Test
+    public void coloring() {
+        // a five point stencil is the classic red-black case
+        int n = 20;
+        CooData data = new CooData(n * n, n * n);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                data.add(i * n + j, i * n + j, 4);
+                if (i > 0) {
+                    data.add(i * n + j, (i - 1) * n + j, -1);
+                    data.add((i - 1) * n + j, i * n + j, -1);
+                }
+                if (j > 0) {
+                    data.add(i * n + j, i * n + j - 1, -1);
+                    data.add(i * n + j - 1, i * n + j, -1);
+                }
+            }
+        }
+        assertEquals(2, new GaussSeidel(data.asSparseMatrix(), 1, true).colors());
+        assertEquals(1, new GaussSeidel(data.asSparseMatrix()).colors());
+
+        // the nine point stencil needs more
+        assertEquals(4, new GaussSeidel(mesh(), 1, true).colors());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badOmega() {
+        new GaussSeidel(mesh(), 2, false);
+    }
+
+    private int sweeps(Solver solver, double[] b) {
+        int[] count = {0};
+        double[] x = solver.solve(b, 1e-8, 100000, (iteration, change, residual, nanos) -> count[0] = iteration);
+
+        // check the answer independently of what the solver thinks
+        SparseMatrix a = mesh();
+        double[] y = a.ax(x, new double[x.length]);
+        for (int i = 0; i < x.length; i++) {
+            assertEquals(b[i], y[i], 1e-5);
+        }
+        return count[0];
+    }
+
+    /**
+     * Diffusion over a mesh where each point connects to its eight neighbors. Interior rows sum to zero,
+     * but the boundary rows are strictly diagonally dominant so the matrix is positive definite.
+     */
+    private static SparseMatrix mesh() {
+        return meshData().asSparseMatrix();
+    }
+
+    private static CooData meshData() {
+        CooData data = new CooData(SIZE * SIZE, SIZE * SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dy = -1; dy <= 1; dy++) {
+                        if ((dx != 0 || dy != 0) && i + dx >= 0 && i + dx < SIZE && j + dy >= 0 && j + dy < SIZE) {
+                            data.add(i * SIZE + j, (i + dx) * SIZE + j + dy, -0.125);
+                        }
+                    }
+                }
+                data.add(i * SIZE + j, i * SIZE + j, 1);
+            }
+        }
+        return data;
+    }
+
+    private static double[] rhs(SparseMatrix a) {
+        Random rand = new Random(1);
+        double[] b = new double[a.nrows()];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = rand.nextGaussian();
+        }
+        return b;
+    }
+}
@@ -0,0 +1,123 @@
+package com.tdunning.examples;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SortTest {
+    @Test
+    public void indexSort() {
+        Random rand = new Random(1);
+        for (int limit : new int[]{10, 1000, Integer.MAX_VALUE}) {
+            int n = 300000;
+            int[] values = new int[n];
+            for (int i = 0; i < n; i++) {
+                values[i] = rand.nextInt(limit);
+            }
+
+            int[] order = new int[n];
+            Sort.sort(order, values);
+            checkIndexSort(order, values, 0, n);
+
+            int[] parallel = new int[n];
+            Sort.parallelSort(parallel, values);
+            checkIndexSort(parallel, values, 0, n);
+        }
+    }
+
+    @Test
+    public void indexSortRange() {
+        Random rand = new Random(2);
+        int n = 200000;
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = rand.nextInt(5000);
+        }
+        int[] order = new int[n];
+        Arrays.fill(order, -1);
+        Sort.parallelSort(order, values, 1000, n - 2000);
+        checkIndexSort(order, values, 1000, n - 1000);
+        assertEquals(-1, order[999]);
+        assertEquals(-1, order[n - 1000]);
+    }
+
+    @Test
+    public void pairedSort() {
+        Random rand = new Random(3);
+        int n = 300000;
+        double[] key = new double[n];
+        double[] other = new double[n];
+        for (int i = 0; i < n; i++) {
+            key[i] = rand.nextInt(20000);
+            other[i] = 3 * key[i] + 1;
+        }
+        double[] expected = key.clone();
+        Arrays.sort(expected);
+
+        double[] k1 = key.clone();
+        double[] v1 = other.clone();
+        Sort.sort(k1, v1);
+        double[] k2 = key.clone();
+        double[] v2 = other.clone();
+        Sort.parallelSort(k2, v2);
+
+        assertArrayEquals(expected, k1, 0);
+        assertArrayEquals(expected, k2, 0);
+        for (int i = 0; i < n; i++) {
+            assertEquals(3 * k1[i] + 1, v1[i], 0);
+            assertEquals(3 * k2[i] + 1, v2[i], 0);
+        }
+    }
+
+    @Test
+    public void intKeySort() {
+        Random rand = new Random(4);
+        int n = 300000;
+        for (boolean parallel : new boolean[]{false, true}) {
+            int[] key = new int[n];
+            int[] a = new int[n];
+            float[] b = new float[n];
+            double[] c = new double[n];
+            for (int i = 0; i < n; i++) {
+                key[i] = rand.nextInt(100000) - 50000;
+                a[i] = -key[i];
+                b[i] = key[i] / 2.0f;
+                c[i] = key[i] + 0.5;
+            }
+            int[] expected = key.clone();
+            Arrays.sort(expected, 100, n - 100);
+
+            if (parallel) {
+                Sort.parallelSort(key, 100, n - 200, a, b, c);
+            } else {
+                Sort.sort(key, 100, n - 200, a, b, c);
+            }
+            assertArrayEquals(expected, key);
+            for (int i = 0; i < n; i++) {
+                assertEquals(-key[i], a[i]);
+                assertEquals(key[i] / 2.0f, b[i], 0);
+                assertEquals(key[i] + 0.5, c[i], 0);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badPayload() {
+        Sort.sort(new int[10], 0, 10, new long[10]);
+    }
+
+    private void checkIndexSort(int[] order, int[] values, int start, int end) {
+        boolean[] seen = new boolean[values.length];
+        for (int i = start; i < end; i++) {
+            assertTrue(order[i] >= start && order[i] < end);
+            assertFalse(seen[order[i]]);
+            seen[order[i]] = true;
+            if (i > start) {
+                assertTrue(values[order[i - 1]] <= values[order[i]]);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.tdunning.examples;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TermDictionaryTest {
+    @Test
+    public void basics() {
+        TermDictionary dict = new TermDictionary();
+        assertEquals(0, dict.add("hotel"));
+        assertEquals(1, dict.add("Room"));
+        assertEquals(0, dict.add("HOTEL"));
+        assertEquals(2, dict.size());
+
+        assertEquals(1, dict.get("room"));
+        assertEquals("room", dict.term(1));
+        assertTrue(dict.contains("Hotel"));
+        assertFalse(dict.contains("hote"));
+        assertEquals(-1, dict.get("hotels"));
+
+        // lookups on part of a larger string
+        String text = "The Hotel room";
+        assertEquals(0, dict.get(text, 4, 9));
+        assertEquals(1, dict.get(text, 10, 14));
+        assertEquals(-1, dict.get(text, 0, 3));
+        assertEquals(2, dict.add(text, 0, 3));
+        assertEquals("the", dict.term(2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void frozen() {
+        TermDictionary dict = new TermDictionary();
+        dict.add("a");
+        dict.freeze();
+        assertEquals(0, dict.get("a"));
+        dict.add("b");
+    }
+
+    @Test
+    public void fromMap() {
+        Map<String, Integer> map = new TreeMap<>();
+        map.put("zebra", 0);
+        map.put("apple", 2);
+        map.put("mango", 1);
+        TermDictionary dict = TermDictionary.from(map);
+        assertTrue(dict.isFrozen());
+        for (String w : map.keySet()) {
+            assertEquals(map.get(w).intValue(), dict.get(w));
+            assertEquals(w, dict.term(map.get(w)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badIds() {
+        Map<String, Integer> map = new HashMap<>();
+        map.put("a", 0);
+        map.put("b", 2);
+        TermDictionary.from(map);
+    }
+
+    @Test
+    public void large() {
+        int n = 200000;
+        Random rand = new Random(1);
+        List<String> words = new ArrayList<>();
+        Map<String, Integer> ref = new TreeMap<>();
+        TermDictionary dict = new TermDictionary();
+        while (ref.size() < n) {
+            String w = Long.toString(rand.nextLong() & 0xffffffffffL, 36);
+            if (!ref.containsKey(w)) {
+                ref.put(w, ref.size());
+                assertEquals(ref.get(w).intValue(), dict.add(w));
+                words.add(w);
+            }
+        }
+        dict.freeze();
+        assertEquals(n, dict.size());
+
+        for (int pass = 0; pass < 3; pass++) {
+            long sum1 = 0;
+            long sum2 = 0;
+            double t0 = System.nanoTime() / 1e9;
+            for (String w : words) {
+                sum1 += ref.get(w);
+            }
+            double t1 = System.nanoTime() / 1e9;
+            for (String w : words) {
+                sum2 += dict.get(w);
+            }
+            double t2 = System.nanoTime() / 1e9;
+            assertEquals(sum1, sum2);
+            System.out.printf("TreeMap %.0f ns/lookup, TermDictionary %.0f ns/lookup\n",
+                    (t1 - t0) / n * 1e9, (t2 - t1) / n * 1e9);
+        }
+        for (int i = 0; i < n; i += 997) {
+            assertEquals(words.get(i), dict.term(i));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.tdunning.examples;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class TokenizerTest {
+    @Test
+    public void offsets() {
+        Tokenizer tokenizer = new Tokenizer();
+        String s = "  Hello,  World!";
+        assertEquals(2, tokenizer.tokenize(s));
+        assertEquals(2, tokenizer.start(0));
+        assertEquals(7, tokenizer.end(0));
+        assertEquals(10, tokenizer.start(1));
+        assertEquals(15, tokenizer.end(1));
+        assertEquals("hello", tokenizer.token(0));
+        assertEquals("world", tokenizer.token(1));
+
+        // buffers are reused
+        assertEquals(0, tokenizer.tokenize("!!! ..."));
+        assertEquals(1, tokenizer.tokenize("x"));
+        assertEquals("x", tokenizer.token(0));
+    }
+
+    @Test
+    public void specialTokens() {
+        check("Call @joe-bob's #hash-tag now");
+        check("costs $10.50% or $3 or $.5 or $");
+        check("at 12:.5.3 or 12:.55 or 12: or 12:.x 7am");
+        check("see http://www.example.com/foo/bar and www.x.io");
+        check("caf\\u00e9 \\U00e9 \\u \\x41 don't can't");
+        check("snake_case Mixed123Case 42 a-b a'b @ # @-x #'y");
+        check("fran\u00e7ais na\u00efve r\u00e9sum\u00e9");
+    }
+
+    @Test
+    public void randomText() {
+        Random rand = new Random(1);
+        String alphabet = "aZ09_ @#$%:.-'\\uU/\u00e9\t\n";
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder s = new StringBuilder();
+            int n = rand.nextInt(60);
+            for (int j = 0; j < n; j++) {
+                s.append(alphabet.charAt(rand.nextInt(alphabet.length())));
+            }
+            check(s.toString());
+        }
+    }
+
+    @Test
+    public void longDocument() {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            s.append("word").append(i).append(' ');
+        }
+        Tokenizer tokenizer = new Tokenizer();
+        assertEquals(1000, tokenizer.tokenize(s));
+        assertEquals("word999", tokenizer.token(999));
+    }
+
+    @Test
+    public void speed() {
+        Random rand = new Random(2);
+        String[] words = {"the", "hotel", "was", "great", "$10", "@staff", "12:.5", "Room", "clean", "didn't"};
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            s.append(words[rand.nextInt(words.length)]).append(rand.nextDouble() < 0.1 ? ". " : " ");
+        }
+        String doc = s.toString();
+
+        for (int warmup = 0; warmup < 3; warmup++) {
+            double t0 = System.nanoTime() / 1e9;
+            long regexCount = VectorText.regexTokenize(doc).count();
+            double t1 = System.nanoTime() / 1e9;
+            long count = VectorText.tokenize(doc).count();
+            double t2 = System.nanoTime() / 1e9;
+            Tokenizer tokenizer = new Tokenizer();
+            long offsetCount = tokenizer.tokenize(doc);
+            double t3 = System.nanoTime() / 1e9;
+            assertEquals(regexCount, count);
+            assertEquals(regexCount, offsetCount);
+            System.out.printf("regex %.1f MB/s, tokenize %.1f MB/s, offsets only %.1f MB/s\n",
+                    doc.length() / (t1 - t0) / 1e6, doc.length() / (t2 - t1) / 1e6, doc.length() / (t3 - t2) / 1e6);
+        }
+    }
+
+    private void check(String s) {
+        List<String> ref = VectorText.regexTokenize(s).collect(Collectors.toList());
+        List<String> actual = VectorText.tokenizeAsList(s);
+        assertEquals(s, ref, actual);
+    }
+}
@@ -0,0 +1,54 @@
+package com.tdunning.examples;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TopKTest {
+    @Test
+    public void keepsBest() {
+        Random rand = new Random(1);
+        for (int k : new int[]{1, 7, 100}) {
+            TopK top = new TopK(k);
+            double[] scores = new double[1000];
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = rand.nextInt(500);
+                top.offer(i, scores[i]);
+            }
+            assertEquals(k, top.size());
+
+            double[] sorted = scores.clone();
+            Arrays.sort(sorted);
+            assertEquals(sorted[sorted.length - k], top.threshold(), 0);
+
+            top.sort();
+            for (int i = 0; i < k; i++) {
+                assertEquals(sorted[sorted.length - 1 - i], top.score(i), 0);
+                assertEquals(scores[top.id(i)], top.score(i), 0);
+            }
+        }
+    }
+
+    @Test
+    public void reuse() {
+        TopK top = new TopK(3);
+        assertEquals(Double.NEGATIVE_INFINITY, top.threshold(), 0);
+        top.offer(1, 1);
+        top.offer(2, 2);
+        assertEquals(2, top.size());
+        top.clear();
+        assertEquals(0, top.size());
+        assertTrue(top.offer(5, -1));
+        assertTrue(top.offer(6, 3));
+        assertTrue(top.offer(7, 2));
+        assertFalse(top.offer(8, -2));
+        assertTrue(top.offer(9, 0));
+        top.sort();
+        assertEquals(6, top.id(0));
+        assertEquals(7, top.id(1));
+        assertEquals(9, top.id(2));
+    }
+}
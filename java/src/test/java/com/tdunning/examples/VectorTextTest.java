@@ -3,16 +3,16 @@ package com.tdunning.examples;
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Multiset;
 import org.junit.Test;
-import smile.math.matrix.DenseMatrix;
-import smile.math.matrix.JMatrix;
 import smile.math.matrix.SparseMatrix;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -77,6 +77,55 @@ public class VectorTextTest {
         assertArrayEquals(new int[]{1, 1, 2, 0, 1, 1, 1}, v);
     }
 
+    @Test
+    public void vectorizeWithTermDictionary() {
+        Map<String, Integer> dict = VectorText.tokenize(sample.split("\\.")[0]).collect(
+                TreeMap::new,
+                (Map<String, Integer> d, String s) -> d.put(s, d.size()),
+                Map::putAll
+        );
+        dict.put("tiger", dict.size());
+
+        TermDictionary terms = TermDictionary.from(dict);
+        assertArrayEquals(VectorText.vectorize(dict, sample), VectorText.vectorize(terms, sample));
+        assertArrayEquals(VectorText.count(dict, sample), VectorText.count(terms, sample));
+        assertArrayEquals(new int[]{1, 1, 2, 1, 1, 1, 1, 0}, VectorText.count(terms, sample));
+    }
+
+    @Test
+    public void sparse() {
+        TermDictionary terms = new TermDictionary();
+        for (String w : new String[]{"tiger", "for", "cold", "we", "small"}) {
+            terms.add(w);
+        }
+        terms.freeze();
+
+        SparseVector v = VectorText.count(terms, sample, new SparseVector(2));
+        assertEquals(4, v.size());
+        assertArrayEquals(VectorText.count(terms, sample), v.toDense(terms.size()));
+        for (int k = 1; k < v.size(); k++) {
+            assertTrue(v.index(k - 1) < v.index(k));
+        }
+        assertEquals(2, v.get(terms.get("for")));
+        assertEquals(0, v.get(terms.get("tiger")));
+
+        // reuse of the same vector overwrites the previous contents
+        VectorText.vectorize(terms, sample, v);
+        assertArrayEquals(VectorText.vectorize(terms, sample), v.toDense(terms.size()));
+        VectorText.count(terms, "nothing here", v);
+        assertEquals(0, v.size());
+
+        // and sparse vectors can go straight into a matrix row
+        CooData m = new CooData(3, terms.size());
+        VectorText.count(terms, sample, v).addTo(m, 2);
+        VectorText.count(terms, "Tiger tiger", v).addTo(m, 0);
+        SparseMatrix mx = m.asSparseMatrix();
+        assertEquals(2, mx.get(0, terms.get("tiger")), 0);
+        assertEquals(2, mx.get(2, terms.get("for")), 0);
+        assertEquals(1, mx.get(2, terms.get("cold")), 0);
+        assertEquals(0, mx.get(1, terms.get("cold")), 0);
+    }
+
     @Test
     public void gloveVectors() throws IOException {
         int nDocs = 50000;
@@ -93,82 +142,56 @@ public class VectorTextTest {
                             strings.add(element);
                         },
                         HashMultiset::addAll);
+        // parsing the text form of the vectors is slow so it is only done once
+        Path glove = Paths.get("/Users/tdunning/Downloads/glove.6B/glove.6B.100d.txt");
+        Path binary = Paths.get("/Users/tdunning/Downloads/glove.6B/glove.6B.100d.bin");
+        if (!Files.exists(binary)) {
+            WordVectors.convert(glove, binary);
+        }
+        WordVectors vectors = WordVectors.open(binary);
+
         AtomicInteger wordCount = new AtomicInteger();
         Map<String, Integer> dict = counts.elementSet().stream()
-                .filter(w -> counts.count(w) > 3)
+                .filter(w -> counts.count(w) > 3 && vectors.row(w) >= 0)
                 .collect(
                         TreeMap::new,
                         (d, w) -> d.put(w, wordCount.getAndIncrement()),
                         TreeMap::putAll);
         List<String> undict = new ArrayList<>(dict.keySet());
 
-        Progress p1 = new Progress();
-        DenseMatrix wordVectors = Files.lines(Paths.get("/Users/tdunning/Downloads/glove.6B/glove.6B.100d.txt"))
-                .collect(
-                        () -> new JMatrix(dict.size(), 100),
-                        (DenseMatrix m, String rawWordVector) -> {
-                            p1.log();
-                            int i = rawWordVector.indexOf(' ');
-                            String word = rawWordVector.substring(0, i);
-                            if (dict.containsKey(word)) {
-                                int row = dict.get(word);
-                                int j = 0;
-                                for (String v : rawWordVector.substring(i + 1).split(" ")) {
-                                    try {
-                                        m.set(row, j++, Double.parseDouble(v));
-                                    } catch (NumberFormatException e) {
-                                        System.out.printf("Error in %s\n%s\n", v, rawWordVector);
-                                    }
-                                }
-                            }
-                        },
-                        DenseMatrix::add
-                );
-
-        DenseMatrix idf = new JMatrix(dict.size(), 1);
-        for (String w : dict.keySet()) {
-            idf.set(dict.get(w), 0, Math.log(counts.size() / counts.count(w)));
+        int dimension = vectors.dimension();
+        float[] wordVectors = new float[dict.size() * dimension];
+        float[] idf = new float[dict.size()];
+        for (Map.Entry<String, Integer> entry : dict.entrySet()) {
+            int iw = entry.getValue();
+            vectors.view(vectors.row(entry.getKey())).get(wordVectors, iw * dimension, dimension);
+            idf[iw] = (float) Math.log(counts.size() / counts.count(entry.getKey()));
         }
+        NearestNeighbors neighbors = new NearestNeighbors(wordVectors, dict.size(), dimension);
 
         docs(p, 100)
                 .forEach(
                         doc -> {
-                            // for each document, build out sum of idf-weighted one-hot vectors
-                            DenseMatrix docVector = new JMatrix(100, 1);
+                            // for each document, build out sum of idf-weighted word vectors
+                            float[] docVector = new float[dimension];
                             VectorText.tokenize(doc)
                                     .filter(dict::containsKey)
                                     .forEach(
                                             w -> {
                                                 int iw = dict.get(w);
-                                                for (int i = 0; i < 100; i++) {
-                                                    docVector.add(i, 0, wordVectors.get(iw, i) * idf.get(iw, 0));
+                                                for (int i = 0; i < dimension; i++) {
+                                                    docVector[i] += wordVectors[iw * dimension + i] * idf[iw];
                                                 }
                                             }
                                     );
 
-                            // now multiply back at the word vectors to find nearest terms
-                            // (dict.size() x 100) * (100 x 1) => (dict.size() x 1)
-                            DenseMatrix r = wordVectors.abmm(docVector);
-
-                            // find words with highest score
-                            PriorityQueue<ScoredPair> pq = new PriorityQueue<>(Comparator.comparingDouble(a -> a.score));
-                            for (int i = 0; i < r.nrows(); i++) {
-                                pq.add(new ScoredPair(i, 0, r.get(i, 0)));
-                                while (pq.size() > 50) {
-                                    pq.poll();
-                                }
-                            }
-
-                            // reverse into descending order
-                            List<Integer> best = pq.stream()
-                                    .map(scoredItem -> scoredItem.i)
-                                    .collect(Collectors.toList());
-                            Collections.reverse(best);
+                            // now find the words whose vectors have the highest dot product with the document
+                            TopK best = neighbors.search(docVector, 50);
 
                             // and let's take a look
                             System.out.printf("%s\n    ", doc.substring(0, Math.min(50, doc.length())));
-                            for (Integer w : best) {
-                                System.out.printf(" %s", undict.get(w));
+                            for (int k = 0; k < best.size(); k++) {
+                                System.out.printf(" %s", undict.get(best.id(k)));
                             }
                             System.out.printf("\n");
                         }
@@ -237,8 +260,6 @@ public class VectorTextTest {
         System.out.printf("built dictionaries %.1f MB/s\n", new File("/Users/tdunning/tmp/OpinRank/hotels.txt").length() / (t1 - t0) / 1e6);
         p = new Progress();
 
-        Random rand = new Random();
-
         // print some documents out for reference and checking
         AtomicInteger id = new AtomicInteger(0);
         Map<Integer, Set<String>> ref = docs(p, 10)
@@ -249,7 +270,7 @@ public class VectorTextTest {
                             // downsample our words according to limit max frequency
                             // and translate to integer form
                             Set<String> words = VectorText.tokenize(raw)
-                                    .filter(w -> dict.containsKey(w) && (rand.nextDouble() < frequencyCut / counts.count(w)))
+                                    .filter(w -> dict.containsKey(w) && (ThreadLocalRandom.current().nextDouble() < frequencyCut / counts.count(w)))
                                     .map(w -> w + "-" + dict.get(w))
                                     .collect(Collectors.toSet());
                             m.put(currentDoc, words);
@@ -269,70 +290,28 @@ public class VectorTextTest {
 
         // do the cooccurrence counting with downsampling of common items
         t0 = System.nanoTime() / 1e9;
-        AtomicInteger docid = new AtomicInteger(0);
-        CooData binaryTerms = docs(p, nDocs)
-                .collect(
-                        CooData::new,
-                        (CooData m, String raw) -> {
-                            int currentDoc = docid.getAndIncrement();
-                            // downsample our words according to limit max frequency
-                            // and translate to integer form
-                            CooData words = VectorText.tokenize(raw)
-                                    .filter(w -> dict.containsKey(w) && (rand.nextDouble() < frequencyCut / counts.count(w)))
-                                    .collect(
-                                            () -> m,
-                                            (CooData mx, String w) -> mx.add(currentDoc, dict.get(w), 1.0),
-                                            CooData::append);
-                        },
-                        CooData::append);
-        binaryTerms.compress(CooData.ElementOrdering.BY_COL, false);
-        for (int k = 0; k < binaryTerms.entries; k++) {
-            binaryTerms.values[k] = 1;
-        }
-        t1 = System.nanoTime() / 1e9;
-        System.out.printf("build doc matrix %.1f MB/s\n", new File("/Users/tdunning/tmp/OpinRank/hotels.txt").length() / (t1 - t0) / 1e6);
-
-        SparseMatrix docByTerms = binaryTerms.asSparseMatrix();
-        double[] finalCounts = new double[docByTerms.ncols()];
-        docByTerms.foreachNonzero(
-                (doc, word, k) -> {
-                    finalCounts[word]++;
+        // the number of pairs isn't known in advance, so the shards start small and grow
+        CooccurrenceBuilder builder = new CooccurrenceBuilder(dict.size(), 0);
+        docs(p, nDocs)
+                .parallel()
+                .forEach(raw -> {
+                    // downsample our words according to limit max frequency
+                    // and translate to integer form
+                    int[] terms = VectorText.tokenize(raw)
+                            .filter(w -> dict.containsKey(w) && (ThreadLocalRandom.current().nextDouble() < frequencyCut / counts.count(w)))
+                            .mapToInt(dict::get)
+                            .toArray();
+                    builder.add(terms);
                 });
-        int totalDocuments = docByTerms.nrows();
-        int totalWords = docByTerms.ncols();
-
-        System.out.printf("doc matrix is %d x %d (%d vs %d non-zeros)\n", docByTerms.nrows(), docByTerms.ncols(), docByTerms.size(), binaryTerms.entries);
-        SparseMatrix cooc = docByTerms.ata();
+        SparseMatrix cooc = builder.asSparseMatrix();
+        double[] finalCounts = builder.counts();
+        int totalDocuments = builder.documents();
+        t1 = System.nanoTime() / 1e9;
+        System.out.printf("build cooccurrence %.1f MB/s\n", new File("/Users/tdunning/tmp/OpinRank/hotels.txt").length() / (t1 - t0) / 1e6);
         System.out.printf("%d x %d (%d non-zeros)\n", cooc.nrows(), cooc.ncols(), cooc.size());
 
         // build associates matrix for words
-        CooData rawConnections = new CooData(cooc.nrows(), cooc.ncols());
-        for (int word = 0; word < totalWords; word++) {
-            PriorityQueue<ScoredPair> highScores = new PriorityQueue<>(Comparator.comparingDouble(t12 -> t12.score));
-
-            // scan through each column, scoring cooccurrences
-            cooc.foreachNonzero(word, word + 1,
-                    (w1, w2, k11) -> {
-                        double k1x = finalCounts[w1];
-                        double kx1 = finalCounts[w2];
-                        double k12 = k1x - k11;
-                        double k21 = kx1 - k11;
-                        double k22 = totalDocuments - k11 - k12 - k21;
-                        double score = llr(k11, k12, k21, k22);
-                        if (score > minScore && (highScores.size() < maxAssociates || score > highScores.peek().score)) {
-                            highScores.add(new ScoredPair(w1, w2, score));
-                        }
-                        while (highScores.size() > maxAssociates) {
-                            highScores.poll();
-                        }
-                    });
-            while (highScores.size() > 0) {
-                ScoredPair associate = highScores.poll();
-                rawConnections.add(associate.i, associate.j, 1);
-            }
-        }
-
-        SparseMatrix associates = rawConnections.asSparseMatrix();
+        SparseMatrix associates = new Associates(minScore, maxAssociates).indicators(cooc, finalCounts, totalDocuments);
         SparseMatrix similar = associates.ata();
         for (String w : new String[]{"wild", "bad", "good", "lovely", "hotel", "rail"}) {
             System.out.printf("%s: ", w);
@@ -346,24 +325,6 @@ public class VectorTextTest {
         }
     }
 
-    private double h(double... kxx) {
-        double sum = 0;
-        for (double k : kxx) {
-            sum += k;
-        }
-        double r = 0;
-        for (double k : kxx) {
-            if (k > 0) {
-                r -= k * Math.log(k / sum);
-            }
-        }
-        return r;
-    }
-
-    private double llr(double k11, double k12, double k21, double k22) {
-        return 2 * (h(k11 + k12, k21 + k22) + h(k11 + k21, k12 + k22) - h(k11, k12, k21, k22));
-    }
-
     @Test
     public void testHash() {
         int[] counts = new int[65536];
@@ -488,28 +449,4 @@ public class VectorTextTest {
 
         }
     }
-
-    private class ScoredPair {
-        private final int i;
-        private final int j;
-        private final double score;
-
-        public ScoredPair(int i, int j, double score) {
-            this.i = i;
-            this.j = j;
-            this.score = score;
-        }
-
-        public int getI() {
-            return i;
-        }
-
-        public int getJ() {
-            return j;
-        }
-
-        public double getScore() {
-            return score;
-        }
-    }
 }
\ No newline at end of file
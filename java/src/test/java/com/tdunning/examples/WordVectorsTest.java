@@ -0,0 +1,162 @@
+package com.tdunning.examples;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WordVectorsTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws IOException {
+        Random rand = new Random(1);
+        int rows = 1000;
+        int dimension = 7;
+        float[][] expected = new float[rows][dimension];
+        List<String> lines = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            StringBuilder line = new StringBuilder("w" + row);
+            for (int i = 0; i < dimension; i++) {
+                expected[row][i] = (float) rand.nextGaussian();
+                line.append(' ').append(expected[row][i]);
+            }
+            lines.add(line.toString());
+        }
+        Path text = tmp.newFile("vectors.txt").toPath();
+        Files.write(text, lines, StandardCharsets.UTF_8);
+        Path binary = tmp.newFile("vectors.bin").toPath();
+        assertEquals(rows, WordVectors.convert(text, binary));
+
+        for (int segmentSize : new int[]{Integer.MAX_VALUE, 1, 64}) {
+            WordVectors vectors = WordVectors.open(binary, segmentSize);
+            assertEquals(rows, vectors.size());
+            assertEquals(dimension, vectors.dimension());
+            float[] v = new float[dimension];
+            for (int row = 0; row < rows; row++) {
+                assertEquals(row, vectors.row("w" + row));
+                assertEquals("w" + row, vectors.term(row));
+                assertArrayEquals(expected[row], vectors.vector(row, v), 0);
+                assertEquals(expected[row][3], vectors.get(row, 3), 0);
+
+                FloatBuffer view = vectors.view(row);
+                assertEquals(dimension, view.remaining());
+                assertTrue(view.isReadOnly());
+                assertEquals(expected[row][dimension - 1], view.get(dimension - 1), 0);
+            }
+            assertEquals(-1, vectors.row("missing"));
+        }
+    }
+
+    @Test
+    public void addAndDot() throws IOException {
+        Path text = tmp.newFile("vectors.txt").toPath();
+        Files.write(text, Arrays.asList("a 1 2 3", "b 0.5 -1 0", "c 0 0 1"), StandardCharsets.UTF_8);
+        Path binary = tmp.newFile("vectors.bin").toPath();
+        WordVectors.convert(text, binary);
+        WordVectors vectors = WordVectors.open(binary);
+
+        float[] sum = new float[3];
+        vectors.add(vectors.row("a"), 1, sum);
+        vectors.add(vectors.row("b"), 2, sum);
+        assertArrayEquals(new float[]{2, 0, 3}, sum, 0);
+        assertEquals(2 - 2 + 9, vectors.dot(vectors.row("a"), new float[]{2, -1, 3}), 0);
+    }
+
+    @Test
+    public void oddTerms() throws IOException {
+        Path text = tmp.newFile("vectors.txt").toPath();
+        Files.write(text, Arrays.asList(
+                "The 1 0",
+                "the 0 1",
+                "at home 2 2",
+                "caf\u00e9 3 3  ",
+                "",
+                "x 4 4"), StandardCharsets.UTF_8);
+        Path binary = tmp.newFile("vectors.bin").toPath();
+        // the second "the" is dropped because the first one wins
+        assertEquals(4, WordVectors.convert(text, binary, true));
+        WordVectors vectors = WordVectors.open(binary);
+        assertEquals(4, vectors.size());
+        assertEquals(1, vectors.get(vectors.row("the"), 0), 0);
+        assertEquals(2, vectors.get(vectors.row("at home"), 1), 0);
+        assertEquals(3, vectors.get(vectors.row("caf\u00e9"), 0), 0);
+        assertEquals(4, vectors.get(vectors.row("x"), 1), 0);
+    }
+
+    @Test
+    public void word2vec() throws IOException {
+        Path text = tmp.newFile("vectors.txt").toPath();
+        Files.write(text, Arrays.asList(
+                "4 3",
+                "the 0.1 0.2 0.3",
+                "a 1 2 3",
+                "in 4 5 6",
+                "new york 7 8 9"), StandardCharsets.UTF_8);
+        Path binary = tmp.newFile("vectors.bin").toPath();
+        // the header gives the dimension and isn't a vector itself
+        assertEquals(4, WordVectors.convert(text, binary, true));
+        WordVectors vectors = WordVectors.open(binary);
+        assertEquals(4, vectors.size());
+        assertEquals(3, vectors.dimension());
+        assertEquals("the", vectors.term(0));
+        assertEquals(0.2f, vectors.get(vectors.row("the"), 1), 0);
+        assertEquals(9, vectors.get(vectors.row("new york"), 2), 0);
+
+        // without multi-word terms, the last line has too many fields
+        try {
+            WordVectors.convert(text, tmp.newFile("strict.bin").toPath());
+            fail("Should have caught long line");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("line 5"));
+        }
+    }
+
+    @Test
+    public void badInput() throws IOException {
+        Path text = tmp.newFile("short.txt").toPath();
+        Files.write(text, Arrays.asList("a 1 2 3", "b 1 2"), StandardCharsets.UTF_8);
+        try {
+            WordVectors.convert(text, tmp.newFile("short.bin").toPath());
+            fail("Should have caught short line");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("line 2"));
+        }
+
+        Files.write(text, Arrays.asList("a 1 2", "b 1 2 3"), StandardCharsets.UTF_8);
+        try {
+            WordVectors.convert(text, tmp.newFile("long.bin").toPath());
+            fail("Should have caught long line");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Expected 2 values on line 2"));
+        }
+
+        Files.write(text, Arrays.asList("a 1 x 3"), StandardCharsets.UTF_8);
+        try {
+            WordVectors.convert(text, tmp.newFile("bad.bin").toPath());
+            fail("Should have caught bad number");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("line 1"));
+        }
+
+        Files.write(text, Arrays.asList("a 1 2 3", "b 4 5 6", "c 7 8 9", "d 10 11 12"), StandardCharsets.UTF_8);
+        try {
+            WordVectors.open(text);
+            fail("Should have caught text file");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("not a word vector file"));
+        }
+    }
+}